@@ -0,0 +1,80 @@
+/**
+ * Unpacks chart data sent by the server as base64 encoded columns of little endian unsigned 32 bit
+ * integers: the number of points, then the time stamps in seconds, then the open, high, low and
+ * close values in cents.
+ *
+ * Points are given to Highcharts as [x, open, high, low, close] arrays rather than objects, since
+ * series of more points than the turbo threshold may only hold arrays or numbers.
+ */
+const COLUMNS = 5;
+
+function unpack(payload) {
+  const binary = atob(payload);
+  const bytes = new Uint8Array(binary.length);
+  for (let i = 0; i < binary.length; i++) {
+    bytes[i] = binary.charCodeAt(i);
+  }
+  const view = new DataView(bytes.buffer);
+  const count = view.getUint32(0, true);
+  const points = new Array(count);
+  for (let i = 0; i < count; i++) {
+    const point = new Array(COLUMNS);
+    for (let column = 0; column < COLUMNS; column++) {
+      const value = view.getUint32(4 * (1 + column * count + i), true);
+      point[column] = column === 0 ? value * 1000 : value / 100;
+    }
+    points[i] = point;
+  }
+  return points;
+}
+
+// The Highcharts chart of a vaadin-chart is created after the element is attached
+function whenChartCreated(chartElement, callback) {
+  if (chartElement.configuration) {
+    callback(chartElement.configuration);
+  } else {
+    requestAnimationFrame(() => whenChartCreated(chartElement, callback));
+  }
+}
+
+// Points added one at a time from the server are objects
+function toArray(point) {
+  return Array.isArray(point) ? point : [point.x, point.open, point.high, point.low, point.close];
+}
+
+window.StockChartData = {
+  /**
+   * Replaces the points of a series within the given ranges, given as pairs of start and end time
+   * stamps in milliseconds, with the given points. Points outside of the ranges are kept.
+   */
+  mergeSeriesData(chartElement, seriesIndex, payload, replacedRanges) {
+    const points = unpack(payload);
+    whenChartCreated(chartElement, chart => {
+      const series = chart.series[seriesIndex];
+      const replaced = x => {
+        for (let i = 0; i < replacedRanges.length; i += 2) {
+          if (x >= replacedRanges[i] && x <= replacedRanges[i + 1]) {
+            return true;
+          }
+        }
+        return false;
+      };
+      const merged = (series.options.data || [])
+        .map(toArray)
+        .filter(point => !replaced(point[0]))
+        .concat(points)
+        .sort((a, b) => a[0] - b[0]);
+      series.setData(merged, true, false, false);
+    });
+  },
+
+  /**
+   * Replaces all points of a series with the given points.
+   */
+  replaceSeriesData(chartElement, seriesIndex, payload) {
+    const points = unpack(payload);
+    whenChartCreated(chartElement, chart => {
+      chart.series[seriesIndex].setData(points, true, false, false);
+    });
+  }
+};
@@ -0,0 +1,44 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+/**
+ * A snapshot of the number of lookups of a cache that were answered from the cache and that were not.
+ * Instances are immutable.
+ */
+public final class CacheStatistics {
+
+    private final long hits;
+    private final long misses;
+
+    public CacheStatistics(long hits, long misses) {
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache, including lookups that waited for an
+     *         identical lookup in progress
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to be computed
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the share of lookups answered from the cache, or zero if there were no lookups
+     */
+    public double getHitRatio() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return hits + " hits, " + misses + " misses";
+    }
+}
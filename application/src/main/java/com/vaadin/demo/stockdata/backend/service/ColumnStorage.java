@@ -0,0 +1,21 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+/**
+ * Where the columnar store keeps the primitive columns of each symbol's data points.
+ */
+public enum ColumnStorage {
+    /**
+     * No columnar store, data points are served as selected by {@link Service#withAcceleration(boolean)}
+     */
+    NONE,
+
+    /**
+     * Columns are kept in regular Java arrays on the heap
+     */
+    HEAP,
+
+    /**
+     * Columns are kept in direct buffers outside of the heap, bounded by -XX:MaxDirectMemorySize
+     */
+    OFF_HEAP
+}
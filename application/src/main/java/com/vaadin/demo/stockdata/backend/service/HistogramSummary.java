@@ -0,0 +1,66 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+/**
+ * A snapshot of the distribution of recorded values, such as the latencies of a service method.
+ * Percentiles are approximate, at most an eighth above the actual value. Instances are immutable.
+ */
+public final class HistogramSummary {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public HistogramSummary(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean of the recorded values, or zero if none have been recorded
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return count + " values, mean " + Math.round(mean) + ", p50 " + p50 + ", p90 " + p90 + ", p99 " + p99
+            + ", p99.9 " + p999 + ", max " + max;
+    }
+}
@@ -0,0 +1,46 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+
+import java.util.Objects;
+
+/**
+ * The most recent data point of a symbol together with the close of the point before it.
+ * Instances are immutable.
+ */
+public final class Quote {
+
+    private final DataPoint latest;
+    private final long previousClose;
+
+    /**
+     * @param latest the most recent data point
+     * @param previousClose the close of the data point preceding the most recent one, or the close
+     *                      of the most recent one if there is no preceding point
+     */
+    public Quote(DataPoint latest, long previousClose) {
+        this.latest = Objects.requireNonNull(latest);
+        this.previousClose = previousClose;
+    }
+
+    /**
+     * @return the most recent data point
+     */
+    public DataPoint getLatest() {
+        return latest;
+    }
+
+    /**
+     * @return the close, in cents, of the data point preceding the most recent one
+     */
+    public long getPreviousClose() {
+        return previousClose;
+    }
+
+    /**
+     * @return the change, in cents, of the most recent close relative to the previous close
+     */
+    public long getChange() {
+        return latest.getClose() - previousClose;
+    }
+}
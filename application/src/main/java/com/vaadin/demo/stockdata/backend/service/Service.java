@@ -4,8 +4,14 @@ import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPo
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
 import com.vaadin.demo.stockdata.backend.service.internal.ServiceImpl;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 /**
@@ -13,7 +19,7 @@ import java.util.stream.Stream;
  * This demo app has no concept of users, so the entire database is a
  * single user.
  */
-public interface Service {
+public interface Service extends AutoCloseable {
 
     /**
      * Create a new Service
@@ -27,6 +33,19 @@ public interface Service {
         return new ServiceImpl(hostIp, user, password);
     }
 
+    /**
+     * Create a read only Service serving the snapshots written by a service configured with
+     * {@link #withSnapshots(Path, Duration)}, without connecting to a database. Symbols without a
+     * snapshot have no data points.
+     *
+     * @param directory the directory holding the snapshot files
+     * @return a Service serving the data of the given snapshots
+     * @throws java.io.UncheckedIOException if the snapshot of the symbols cannot be read
+     */
+    static Service openSnapshots(Path directory) {
+        return ServiceImpl.openSnapshots(directory);
+    }
+
 
     /**
      * Retrieve historical data points for a given symbol.
@@ -35,10 +54,26 @@ public interface Service {
      * @param startTime Start time (inclusive)
      * @param endTime End time (inclusive)
      * @param numberOfPoints Approximate number of points to be returned
-     * @return The stream of filtered data points of the given symbol and time interval
+     * @return The stream of filtered data points of the given symbol and time interval. Results are
+     *         shared by all sessions, so the interval may be slightly widened to match a cached one.
      */
     Stream<DataPoint> getHistoryData(Symbol symbol, LocalDateTime startTime, LocalDateTime endTime, int numberOfPoints);
 
+    /**
+     * Retrieve historical data points for a given symbol without blocking the calling thread. The
+     * query runs on threads dedicated to history queries. Cancelling the returned future before the
+     * query has started skips it, and cancelling it while running lets it finish, discarding its
+     * result.
+     *
+     * @param symbol Symbol we want history data for.
+     * @param startTime Start time (inclusive)
+     * @param endTime End time (inclusive)
+     * @param numberOfPoints Approximate number of points to be returned
+     * @return a future completed with the filtered data points of the given symbol and time interval
+     */
+    CompletableFuture<List<DataPoint>> getHistoryDataAsync(Symbol symbol, LocalDateTime startTime, LocalDateTime endTime,
+                                                           int numberOfPoints);
+
     /**
      * @param symbol the symbol for which to get data
      * @return the most recent data point for the given symbol
@@ -46,14 +81,141 @@ public interface Service {
     Optional<DataPoint> getMostRecentDataPoint(Symbol symbol);
 
     /**
-     * @return the stream of all symbols of the database
+     * @param symbol the symbol for which to get data
+     * @return the most recent data point for the given symbol along with the previous close
+     */
+    Optional<Quote> getQuote(Symbol symbol);
+
+    /**
+     * Retrieve the history and latest quote of several symbols in one call. The symbols are looked
+     * up in parallel.
+     *
+     * @param symbols the symbols for which to get data
+     * @param numberOfPoints Approximate number of points in the history of each symbol
+     * @return an overview of each of the given symbols, in the same order as the symbols
+     */
+    List<SymbolOverview> getOverviews(Collection<Symbol> symbols, int numberOfPoints);
+
+    /**
+     * Subscribe to the data points appended to a symbol when its in memory data is reloaded. New
+     * points are only detected for symbols held in memory, so nothing is received when using direct
+     * SQL. The listener is called from a background thread and should return quickly.
+     *
+     * @param symbol the symbol to get new data points of
+     * @param listener receives the new data points of each reload, in ascending time stamp order
+     * @return the subscription, to be cancelled when no longer interested
+     */
+    Subscription subscribe(Symbol symbol, Consumer<List<DataPoint>> listener);
+
+    /**
+     * @return the number of history queries answered from the result cache shared by all sessions,
+     *         and the number of queries that were computed
+     */
+    CacheStatistics getHistoryCacheStatistics();
+
+    /**
+     * @return the latencies of the service methods, the loads of symbol data and the current state
+     *         of the memory, executors and caches of this service, also available over JMX
+     */
+    ServiceMetricsMXBean getMetrics();
+
+    /**
+     * @return the stream of all symbols of the database, read once and then held in memory
      */
     Stream<Symbol> getSymbols();
 
+    /**
+     * Search symbols by any part of their ticker or name, ignoring case. Results are served from
+     * memory and the result of each filter is cached, so paging through it is cheap.
+     *
+     * @param filter the text to look for, or an empty string for all symbols
+     * @param offset the index of the first matching symbol to return
+     * @param limit the maximum number of symbols to return
+     * @return the matching symbols, with tickers equal to the filter first, then tickers starting
+     *         with the filter, then all other matches
+     */
+    List<Symbol> findSymbols(String filter, int offset, int limit);
+
+    /**
+     * @param filter the text to look for in the ticker or name, or an empty string for all symbols
+     * @return the number of symbols matching the filter
+     */
+    int countSymbols(String filter);
+
     /**
      * Select whether to use Speedment in memory acceleration when looking up data
      *
      * @param accelerate true for using Speedment in memory acceleration, false for direct SQL
      */
     Service withAcceleration(boolean accelerate);
+
+    /**
+     * Select whether to serve data points from a columnar store holding each symbol's points as
+     * sorted primitive columns, where time ranges are looked up by binary search. The columns are
+     * loaded from the database, bypassing the Speedment in memory acceleration.
+     *
+     * @param storage where to keep the columns, or {@link ColumnStorage#NONE} for looking up data as
+     *                selected by {@link #withAcceleration(boolean)}
+     */
+    Service withColumnarStore(ColumnStorage storage);
+
+    /**
+     * Select how often and how the columnar store is refreshed from the database. In incremental mode
+     * only the data points more recent than the latest one held for each symbol are fetched and
+     * appended, instead of reloading the whole history of each symbol. The Speedment in memory
+     * acceleration is always reloaded in full every two minutes.
+     *
+     * @param interval the delay between refreshes using incremental mode, or null for a full reload
+     *                 every two minutes
+     */
+    Service withIncrementalRefresh(Duration interval);
+
+    /**
+     * Select how many symbols may be reloaded from the database at the same time. All symbols share
+     * the same reload threads, and reloads of recently queried symbols run first.
+     *
+     * @param maxConcurrentReloads the maximum number of reloads running at the same time
+     */
+    Service withReloadConcurrency(int maxConcurrentReloads);
+
+    /**
+     * Select how much memory may be used for holding data points in memory, either by the Speedment
+     * in memory acceleration or by the columnar store. When exceeded, the data of the least recently
+     * queried symbols is released, and loaded again when next queried. Unlimited by default.
+     *
+     * @param bytes the approximate maximum number of bytes used by each of the in memory stores
+     */
+    Service withMemoryBudget(long bytes);
+
+    /**
+     * Select where the columnar store keeps snapshot files of the data of each symbol. A symbol
+     * having a snapshot is served from the memory mapped file as soon as it is first queried, and
+     * the points more recent than the snapshot are then loaded in the background. This makes a
+     * restart much faster than loading all data from the database again. Only used with the
+     * columnar store, see {@link #withColumnarStore(ColumnStorage)}.
+     *
+     * @param directory the directory holding the snapshot files, or null for no snapshots
+     * @param interval the delay between writes of the snapshots of all loaded symbols having new
+     *                 points, or null for only reading snapshots
+     * @throws java.io.UncheckedIOException if the directory cannot be created
+     */
+    Service withSnapshots(Path directory, Duration interval);
+
+    /**
+     * Start loading the data of symbols into memory in the background, so that the first queries for
+     * them do not have to wait for the data to be loaded. Symbols are loaded in the order of
+     * {@link #getSymbols()}, which is the order they are first shown in. Does nothing for symbols when
+     * using direct SQL.
+     *
+     * @param maxSymbols the maximum number of symbols to load
+     * @param parallelism the number of symbols to load at the same time
+     * @return the progress of the warm up
+     */
+    WarmUp warmUp(long maxSymbols, int parallelism);
+
+    /**
+     * Stop all reloads and release the resources held by this service
+     */
+    @Override
+    void close();
 }
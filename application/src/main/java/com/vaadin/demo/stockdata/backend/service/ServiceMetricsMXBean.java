@@ -0,0 +1,71 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+import java.util.Map;
+
+/**
+ * Measurements of a running service, for monitoring its latencies and the memory it holds. Each
+ * service registers itself with the platform MBean server under
+ * {@code com.vaadin.demo.stockdata:type=Service,name=<name>}, so the same values can be read with
+ * any JMX console.
+ *
+ * Durations are in microseconds.
+ */
+public interface ServiceMetricsMXBean {
+
+    /**
+     * @return the latencies of each public query method of the service, by method name, as seen by
+     *         the caller. Asynchronous methods are measured until their result completes.
+     */
+    Map<String, HistogramSummary> getOperationLatencies();
+
+    /**
+     * @return the durations of loading the data of a symbol into memory for the first time
+     */
+    HistogramSummary getShardLoadLatency();
+
+    /**
+     * @return the durations of reloading or refreshing the data of a symbol held in memory
+     */
+    HistogramSummary getShardReloadLatency();
+
+    /**
+     * @return the number of data points read by each load
+     */
+    HistogramSummary getShardLoadRows();
+
+    /**
+     * @return the number of data points read by each reload, only counting the new points of
+     *         incremental refreshes
+     */
+    HistogramSummary getShardReloadRows();
+
+    /**
+     * @return the number of symbols whose data is held in memory
+     */
+    int getLoadedShards();
+
+    /**
+     * @return the estimated number of bytes held in memory for the data of all symbols
+     */
+    long getShardMemoryBytes();
+
+    /**
+     * @return the memory budget for the data of all symbols, in bytes
+     */
+    long getMemoryBudgetBytes();
+
+    /**
+     * @return the estimated number of bytes held in memory for the data of each loaded symbol, by symbol id
+     */
+    Map<Integer, Long> getShardMemoryBytesBySymbolId();
+
+    /**
+     * @return the number of tasks waiting for a thread, by executor name
+     */
+    Map<String, Integer> getExecutorQueueDepths();
+
+    /**
+     * @return the lookups of each cache shared by all sessions, by cache name
+     */
+    Map<String, CacheStatistics> getCacheStatistics();
+}
@@ -0,0 +1,13 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+/**
+ * A subscription to new data points of a symbol
+ */
+@FunctionalInterface
+public interface Subscription {
+
+    /**
+     * Stop receiving new data points. Does nothing if already cancelled.
+     */
+    void cancel();
+}
@@ -0,0 +1,60 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A short history and the latest quote of a symbol, as shown in a list of symbols.
+ * Instances are immutable and may be shared between sessions.
+ */
+public final class SymbolOverview {
+
+    private final Symbol symbol;
+    private final List<DataPoint> history;
+    private final List<Double> closeHistory;
+    private final Quote quote;
+
+    /**
+     * @param symbol the symbol
+     * @param history a few data points covering the whole history of the symbol, oldest first
+     * @param quote the latest quote of the symbol, or null if the symbol has no data
+     */
+    public SymbolOverview(Symbol symbol, List<DataPoint> history, Quote quote) {
+        this.symbol = Objects.requireNonNull(symbol);
+        this.history = List.copyOf(history);
+        this.closeHistory = this.history.stream()
+            .map(point -> point.getClose() / 100.0)
+            .collect(Collectors.toUnmodifiableList());
+        this.quote = quote;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return a few data points covering the whole history of the symbol, oldest first
+     */
+    public List<DataPoint> getHistory() {
+        return history;
+    }
+
+    /**
+     * @return the close, in dollars, of each point of the history, oldest first
+     */
+    public List<Double> getCloseHistory() {
+        return closeHistory;
+    }
+
+    /**
+     * @return the latest quote of the symbol, if the symbol has any data
+     */
+    public Optional<Quote> getQuote() {
+        return Optional.ofNullable(quote);
+    }
+}
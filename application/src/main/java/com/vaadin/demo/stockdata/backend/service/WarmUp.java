@@ -0,0 +1,121 @@
+package com.vaadin.demo.stockdata.backend.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The progress of loading the data of a number of symbols into memory ahead of the first queries
+ */
+public final class WarmUp {
+
+    private final int total;
+    private final AtomicInteger completed;
+    private final AtomicInteger failed;
+    private final AtomicInteger processed;
+    private final CompletableFuture<Void> done;
+
+    public WarmUp(int total) {
+        this.total = total;
+        this.completed = new AtomicInteger();
+        this.failed = new AtomicInteger();
+        this.processed = new AtomicInteger();
+        this.done = new CompletableFuture<>();
+        if (total == 0) {
+            done.complete(null);
+        }
+    }
+
+    /**
+     * @return the number of symbols to load
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the number of symbols loaded so far
+     */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of symbols that failed to load so far
+     */
+    public int getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return true when all symbols have been loaded or failed to load, or the warm up has failed
+     */
+    public boolean isDone() {
+        return done.isDone();
+    }
+
+    /**
+     * @return true when all symbols have been loaded or failed to load, without the warm up failing
+     */
+    public boolean isCompletedNormally() {
+        return done.isDone() && !done.isCompletedExceptionally();
+    }
+
+    /**
+     * @return a future completing when all symbols have been loaded or failed to load, and
+     *         completing exceptionally if the warm up fails
+     */
+    public CompletableFuture<Void> getFuture() {
+        return done;
+    }
+
+    /**
+     * Records that one more symbol has been loaded
+     *
+     * @return the number of symbols loaded or failed to load so far
+     */
+    public int symbolCompleted() {
+        completed.incrementAndGet();
+        return symbolProcessed();
+    }
+
+    /**
+     * Records that loading one more symbol has failed
+     *
+     * @return the number of symbols loaded or failed to load so far
+     */
+    public int symbolFailed() {
+        failed.incrementAndGet();
+        return symbolProcessed();
+    }
+
+    private int symbolProcessed() {
+        final int count = processed.incrementAndGet();
+        if (count == total) {
+            done.complete(null);
+        }
+        return count;
+    }
+
+    /**
+     * Ends the warm up without all symbols being loaded
+     *
+     * @param cause the reason for failing
+     */
+    public void fail(Throwable cause) {
+        done.completeExceptionally(cause);
+    }
+
+    @Override
+    public String toString() {
+        final String progress = completed.get() + "/" + total + " symbols loaded"
+            + (failed.get() > 0 ? ", " + failed.get() + " failed" : "");
+        if (done.isCompletedExceptionally()) {
+            try {
+                done.join();
+            } catch (RuntimeException e) {
+                return progress + ", warm up failed: " + (e.getCause() == null ? e : e.getCause());
+            }
+        }
+        return progress;
+    }
+}
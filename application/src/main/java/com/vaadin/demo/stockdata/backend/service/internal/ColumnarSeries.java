@@ -0,0 +1,383 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPointImpl;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The data points of a single symbol, sorted by time stamp and stored column by column
+ * in one primitive buffer. The buffer is either a heap array or a direct buffer,
+ * depending on the {@link ColumnStorage} used when building the series.
+ *
+ * Instances are immutable and thus safe to share between threads. To allow appending without
+ * copying, each column has spare capacity in the buffer and the last row is kept outside of the
+ * buffer. An instance therefore only ever reads the buffer below its last row, while a newer
+ * instance created by {@link #append(Builder, boolean)} may write the buffer from there on.
+ */
+final class ColumnarSeries {
+
+    static final int TIME_STAMP = 0;
+    static final int OPEN = 1;
+    static final int CLOSE = 2;
+    static final int HIGH = 3;
+    static final int LOW = 4;
+    static final int VOLUME = 5;
+    static final int COLUMNS = 6;
+
+    /**
+     * The most rows a series can hold. Buffers are indexed by int and direct buffers hold at most
+     * Integer.MAX_VALUE bytes, so all columns of a symbol must fit in that many bytes.
+     */
+    static final int MAX_CAPACITY = Integer.MAX_VALUE / Long.BYTES / COLUMNS;
+
+    private final int symbolId;
+    private final int size;
+    private final int capacity;
+    private final LongBuffer data;
+    private final long[] last;
+
+    private ColumnarSeries(int symbolId, int size, int capacity, LongBuffer data, long[] last) {
+        this.symbolId = symbolId;
+        this.size = size;
+        this.capacity = capacity;
+        this.data = data;
+        this.last = last;
+    }
+
+    /**
+     * Creates a series from a stream of data points that is already sorted by time stamp.
+     *
+     * @param symbolId the id of the symbol the points belong to
+     * @param sortedPoints the data points, in ascending time stamp order
+     * @param storage where to allocate the columns
+     * @return a new series holding a copy of the given points
+     */
+    static ColumnarSeries of(int symbolId, Stream<DataPoint> sortedPoints, ColumnStorage storage) {
+        final Builder builder = new Builder();
+        try (Stream<DataPoint> points = sortedPoints) {
+            points.forEach(builder::add);
+        }
+        return builder.build(symbolId, storage);
+    }
+
+    /**
+     * Creates a series over existing columns, such as those of a memory mapped snapshot. A read only
+     * buffer is never written to, appending to the series copies the columns instead.
+     *
+     * @param symbolId the id of the symbol the points belong to
+     * @param size the number of points
+     * @param columns the columns one after the other, each holding all points in ascending time stamp order
+     * @return a new series sharing the given buffer
+     */
+    static ColumnarSeries wrap(int symbolId, int size, LongBuffer columns) {
+        checkCapacity(symbolId, size);
+        if (size == 0) {
+            return new ColumnarSeries(symbolId, 0, 0, columns, null);
+        }
+        final long[] last = new long[COLUMNS];
+        for (int column = 0; column < COLUMNS; column++) {
+            last[column] = columns.get(column * size + size - 1);
+        }
+        return new ColumnarSeries(symbolId, size, size, columns, last);
+    }
+
+    /**
+     * Writes the columns of this series in the layout read by {@link #wrap(int, int, LongBuffer)}
+     *
+     * @param target the buffer to write to, from its current position
+     */
+    void writeColumns(LongBuffer target) {
+        for (int column = 0; column < COLUMNS && size > 0; column++) {
+            final LongBuffer source = data.duplicate();
+            source.limit(column * capacity + size - 1).position(column * capacity);
+            target.put(source);
+            target.put(last[column]);
+        }
+    }
+
+    int symbolId() {
+        return symbolId;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of bytes allocated for the columns of this series
+     */
+    long bytes() {
+        return ((long) capacity + 1) * COLUMNS * Long.BYTES;
+    }
+
+    ColumnStorage storage() {
+        return data.isDirect() ? ColumnStorage.OFF_HEAP : ColumnStorage.HEAP;
+    }
+
+    long get(int column, int index) {
+        return index == size - 1 ? last[column] : data.get(column * capacity + index);
+    }
+
+    long timeStamp(int index) {
+        return get(TIME_STAMP, index);
+    }
+
+    /**
+     * @return the time stamp of the most recent point, or Long.MIN_VALUE if the series is empty
+     */
+    long lastTimeStamp() {
+        return size == 0 ? Long.MIN_VALUE : last[TIME_STAMP];
+    }
+
+    /**
+     * @param timeStamp the time stamp to search for
+     * @return the index of the first point with a time stamp not before the given one, or size if there is none
+     */
+    int lowerBound(long timeStamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (timeStamp(mid) < timeStamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param timeStamp the time stamp to search for
+     * @return the index of the first point with a time stamp after the given one, or size if there is none
+     */
+    int upperBound(long timeStamp) {
+        return timeStamp == Long.MAX_VALUE ? size : lowerBound(timeStamp + 1);
+    }
+
+    DataPoint toDataPoint(int index) {
+        return new DataPointImpl()
+            .setSymbolId(symbolId)
+            .setTimeStamp(timeStamp(index))
+            .setOpen(get(OPEN, index))
+            .setClose(get(CLOSE, index))
+            .setHigh(get(HIGH, index))
+            .setLow(get(LOW, index))
+            .setVolume(get(VOLUME, index));
+    }
+
+    /**
+     * Selects approximately the given number of points, evenly spread in time, from the points
+     * within the given time range. The first and last points of the range are always included.
+     * Each selected point is found by binary search, so the cost is proportional to the number of
+     * points returned rather than to the number of points in the range.
+     *
+     * @param start start time stamp (inclusive)
+     * @param end end time stamp (inclusive)
+     * @param numberOfPoints approximate number of points to return
+     * @return the selected points, in ascending time stamp order
+     */
+    Stream<DataPoint> sieve(long start, long end, int numberOfPoints) {
+        final int from = lowerBound(start);
+        final int to = upperBound(end);
+        return sieveIndexes(from, to, numberOfPoints).mapToObj(this::toDataPoint);
+    }
+
+    IntStream sieveIndexes(int from, int to, int numberOfPoints) {
+        if (to - from <= numberOfPoints) {
+            return IntStream.range(from, to);
+        }
+        final long first = timeStamp(from);
+        final long last = timeStamp(to - 1);
+        final long step = Math.max(1, (last - first) / (numberOfPoints - 1));
+        final int[] indexes = new int[numberOfPoints + 1];
+        int count = 0;
+        int index = from;
+        while (index < to - 1 && count < numberOfPoints) {
+            indexes[count++] = index;
+            final int next = lowerBound(timeStamp(index) + step);
+            index = Math.max(index + 1, next);
+        }
+        indexes[count++] = to - 1;
+        return Arrays.stream(indexes, 0, count);
+    }
+
+    /**
+     * Aggregates the points of this series into candles covering fixed time buckets. Each candle has
+     * the open of the first point and the close of the last point in its bucket, the highest high,
+     * the lowest low and the total volume. Candles are stamped with the start time of their bucket.
+     *
+     * @param bucketSeconds the length of each bucket in seconds
+     * @param bucketOffset the time stamp of any bucket start, used for aligning buckets
+     * @return a new series with one point per non-empty bucket, using the same storage as this series
+     */
+    ColumnarSeries rollup(long bucketSeconds, long bucketOffset) {
+        return rollup(0, bucketSeconds, bucketOffset).build(symbolId, storage());
+    }
+
+    /**
+     * Aggregates the points from the given index and on into candles, as described for
+     * {@link #rollup(long, long)}.
+     *
+     * @param from the index of the first point to aggregate, which should be the first point of a bucket
+     * @param bucketSeconds the length of each bucket in seconds
+     * @param bucketOffset the time stamp of any bucket start, used for aligning buckets
+     * @return a builder holding the candles
+     */
+    Builder rollup(int from, long bucketSeconds, long bucketOffset) {
+        final Builder builder = new Builder();
+        int index = from;
+        while (index < size) {
+            final long bucketStart = Math.floorDiv(timeStamp(index) - bucketOffset, bucketSeconds) * bucketSeconds + bucketOffset;
+            final long bucketEnd = bucketStart + bucketSeconds;
+            final long open = get(OPEN, index);
+            long close = get(CLOSE, index);
+            long high = get(HIGH, index);
+            long low = get(LOW, index);
+            long volume = get(VOLUME, index);
+            while (++index < size && timeStamp(index) < bucketEnd) {
+                close = get(CLOSE, index);
+                high = Math.max(high, get(HIGH, index));
+                low = Math.min(low, get(LOW, index));
+                volume += get(VOLUME, index);
+            }
+            builder.add(bucketStart, open, close, high, low, volume);
+        }
+        return builder;
+    }
+
+    /**
+     * Creates a series with the given rows added after the rows of this series. The rows are written
+     * into the spare capacity of the buffer of this series when possible, which never affects this
+     * series. Otherwise, or if the buffer is read only, all rows are copied into a new, larger buffer. Only one series may be appended
+     * to from each instance, which is the case when a single thread updates a symbol.
+     *
+     * @param rows the rows to add, with time stamps not before the last row of this series
+     * @param replaceLast true if the first of the given rows replaces the last row of this series
+     * @return a new series with the given rows added
+     */
+    ColumnarSeries append(Builder rows, boolean replaceLast) {
+        if (rows.size == 0) {
+            return this;
+        }
+        final int kept = replaceLast ? size - 1 : size;
+        final int newSize = kept + rows.size;
+        // All rows but the last one are stored in the buffer
+        final int buffered = newSize - 1;
+        final LongBuffer target;
+        final int targetCapacity;
+        if (buffered <= capacity && !data.isReadOnly()) {
+            target = data;
+            targetCapacity = capacity;
+        } else {
+            checkCapacity(symbolId, buffered);
+            targetCapacity = (int) Math.min(Math.max(buffered, 2L * capacity), MAX_CAPACITY);
+            target = allocate(targetCapacity * COLUMNS, storage());
+            final int copied = Math.max(0, Math.min(kept, size - 1));
+            for (int column = 0; column < COLUMNS; column++) {
+                final LongBuffer source = data.duplicate();
+                source.limit(column * capacity + copied).position(column * capacity);
+                target.position(column * targetCapacity);
+                target.put(source);
+            }
+            target.clear();
+        }
+        // Only absolute writes at or above index size - 1, which this series never reads from the buffer
+        for (int column = 0; column < COLUMNS; column++) {
+            if (!replaceLast && size > 0) {
+                target.put(column * targetCapacity + size - 1, last[column]);
+            }
+            for (int row = 0; row < rows.size - 1; row++) {
+                target.put(column * targetCapacity + kept + row, rows.columns[column][row]);
+            }
+        }
+        return new ColumnarSeries(symbolId, newSize, targetCapacity, target, rows.row(rows.size - 1));
+    }
+
+    /**
+     * Accumulates data points into growable primitive columns
+     */
+    static final class Builder {
+        private long[][] columns = new long[COLUMNS][1024];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(DataPoint point) {
+            add(point.getTimeStamp(), point.getOpen(), point.getClose(), point.getHigh(), point.getLow(), point.getVolume());
+        }
+
+        void add(long timeStamp, long open, long close, long high, long low, long volume) {
+            if (size == columns[TIME_STAMP].length) {
+                final int capacity = size * 2;
+                for (int column = 0; column < COLUMNS; column++) {
+                    columns[column] = Arrays.copyOf(columns[column], capacity);
+                }
+            }
+            columns[TIME_STAMP][size] = timeStamp;
+            columns[OPEN][size] = open;
+            columns[CLOSE][size] = close;
+            columns[HIGH][size] = high;
+            columns[LOW][size] = low;
+            columns[VOLUME][size] = volume;
+            size++;
+        }
+
+        private long[] row(int index) {
+            final long[] row = new long[COLUMNS];
+            for (int column = 0; column < COLUMNS; column++) {
+                row[column] = columns[column][index];
+            }
+            return row;
+        }
+
+        ColumnarSeries build(int symbolId, ColumnStorage storage) {
+            if (size == 0) {
+                return new ColumnarSeries(symbolId, 0, 0, allocate(0, storage), null);
+            }
+            // Leave some room for appending new rows without copying
+            final int buffered = size - 1;
+            checkCapacity(symbolId, buffered);
+            final int capacity = (int) Math.min(buffered + (buffered >> 4) + 16L, MAX_CAPACITY);
+            final LongBuffer data = allocate(capacity * COLUMNS, storage);
+            for (int column = 0; column < COLUMNS; column++) {
+                data.position(column * capacity);
+                data.put(columns[column], 0, buffered);
+            }
+            data.clear();
+            return new ColumnarSeries(symbolId, size, capacity, data, row(size - 1));
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the rows do not fit in the buffer of a series
+     */
+    private static void checkCapacity(int symbolId, int rows) {
+        if (rows > MAX_CAPACITY) {
+            throw new IllegalStateException("Symbol " + symbolId + " has " + rows
+                + " points, more than the " + MAX_CAPACITY + " a columnar series can hold");
+        }
+    }
+
+    private static LongBuffer allocate(int longs, ColumnStorage storage) {
+        if (storage == ColumnStorage.OFF_HEAP) {
+            return ByteBuffer.allocateDirect(longs * Long.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+        }
+        return LongBuffer.allocate(longs);
+    }
+}
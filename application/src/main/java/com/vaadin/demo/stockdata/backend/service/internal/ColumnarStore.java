@@ -0,0 +1,232 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Holds the data points of each symbol as a {@link ColumnarSeries} with its {@link RollupPyramid},
+ * loaded on first access and periodically refreshed. A refresh either replaces the data of a symbol
+ * with a freshly loaded copy, or, in incremental mode, only loads the points more recent than the
+ * latest one held and appends them. The data of the least recently used symbols is evicted when
+ * exceeding the memory budget.
+ *
+ * With a {@link SnapshotStore}, a symbol is first looked up in its snapshot, which is memory mapped
+ * and served right away while the points more recent than the snapshot are caught up with in the
+ * background. The series of all loaded symbols can then be written back to the store.
+ */
+final class ColumnarStore implements AutoCloseable {
+
+    static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofMinutes(2);
+
+    private final DataPointSource source;
+    private final ColumnStorage storage;
+    private final Consumer<ColumnarSeries> loadListener;
+    private final IntConsumer evictionListener;
+    private final ShardCache<RollupPyramid> pyramids;
+    private final Map<Integer, Symbol> loadedSymbols;
+    private final Map<Integer, ReloadScheduler.Registration> refreshes;
+    private final ReloadScheduler reloadScheduler;
+    private final ServiceMetrics metrics;
+    private final Set<Integer> catchingUp;
+    private volatile Duration interval;
+    private volatile boolean incremental;
+    private volatile SnapshotStore snapshots;
+
+    /**
+     * @param source supplies the data points of a symbol
+     * @param storage where to allocate the columns
+     * @param loadListener notified with the new series each time a symbol has been loaded or refreshed
+     * @param evictionListener notified with the symbol id each time the data of a symbol has been evicted
+     * @param reloadScheduler runs the periodic refreshes of each symbol
+     * @param memoryBudget the maximum number of bytes to allocate for the columns of all symbols
+     * @param metrics records the duration and size of each load and refresh
+     */
+    ColumnarStore(DataPointSource source, ColumnStorage storage, Consumer<ColumnarSeries> loadListener,
+                  IntConsumer evictionListener, ReloadScheduler reloadScheduler, long memoryBudget,
+                  ServiceMetrics metrics) {
+        this.source = Objects.requireNonNull(source);
+        this.storage = Objects.requireNonNull(storage);
+        this.loadListener = Objects.requireNonNull(loadListener);
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        this.reloadScheduler = Objects.requireNonNull(reloadScheduler);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.pyramids = new ShardCache<>(memoryBudget, RollupPyramid::bytes, (symbolId, pyramid) -> evicted(symbolId));
+        this.loadedSymbols = new ConcurrentHashMap<>();
+        this.refreshes = new ConcurrentHashMap<>();
+        this.catchingUp = ConcurrentHashMap.newKeySet();
+        this.interval = DEFAULT_REFRESH_INTERVAL;
+    }
+
+    /**
+     * Sets how the data of all loaded symbols is refreshed.
+     *
+     * @param interval the delay between the end of one refresh of a symbol and the start of the next
+     * @param incremental true for appending the points more recent than the latest one held,
+     *                    false for reloading all points
+     */
+    synchronized void scheduleRefresh(Duration interval, boolean incremental) {
+        this.interval = Objects.requireNonNull(interval);
+        this.incremental = incremental;
+        loadedSymbols.values().forEach(this::scheduleRefresh);
+    }
+
+    void setMemoryBudget(long memoryBudget) {
+        pyramids.setBudget(memoryBudget);
+    }
+
+    /**
+     * @param snapshots where to look up symbols before loading them from the source, or null for
+     *                  always loading from the source
+     */
+    void setSnapshots(SnapshotStore snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Writes the series of every loaded symbol having new points to the snapshot store, if any.
+     * Failures are reported and skip only the failing symbol.
+     */
+    void writeSnapshots() {
+        final SnapshotStore store = snapshots;
+        if (store == null) {
+            return;
+        }
+        pyramids.forEach((symbolId, pyramid) -> {
+            try {
+                store.write(pyramid.raw());
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Failed to write the snapshot of symbol " + symbolId);
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * @return the number of symbols whose data is held
+     */
+    int size() {
+        return pyramids.size();
+    }
+
+    /**
+     * @return the bytes allocated for the columns of all symbols
+     */
+    long getUsedBytes() {
+        return pyramids.getUsedBytes();
+    }
+
+    /**
+     * @return the bytes allocated for the columns of each symbol, by symbol id
+     */
+    Map<Integer, Long> getBytesBySymbolId() {
+        return pyramids.getBytesBySymbolId();
+    }
+
+    private synchronized void scheduleRefresh(Symbol symbol) {
+        final ReloadScheduler.Registration previous = refreshes.put(symbol.getId(),
+            reloadScheduler.register(symbol.getId(), interval, () -> refresh(symbol)));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * @param symbol the symbol to get the data points of
+     * @return the pyramid of the symbol, loading it in the current thread if not already loaded
+     */
+    RollupPyramid get(Symbol symbol) {
+        reloadScheduler.touch(symbol.getId());
+        return pyramids.get(symbol.getId(), id -> {
+            final RollupPyramid mapped = loadSnapshot(symbol).orElse(null);
+            final RollupPyramid loaded = mapped == null ? load(symbol, false) : mapped;
+            loadedSymbols.put(id, symbol);
+            scheduleRefresh(symbol);
+            if (mapped != null) {
+                // Catch up with the points added since the snapshot was written
+                catchingUp.add(id);
+                refreshes.get(id).runSoon();
+            }
+            return loaded;
+        });
+    }
+
+    private synchronized void evicted(int symbolId) {
+        loadedSymbols.remove(symbolId);
+        catchingUp.remove(symbolId);
+        final ReloadScheduler.Registration refresh = refreshes.remove(symbolId);
+        if (refresh != null) {
+            refresh.cancel();
+        }
+        evictionListener.accept(symbolId);
+    }
+
+    private Optional<RollupPyramid> loadSnapshot(Symbol symbol) {
+        final SnapshotStore store = snapshots;
+        if (store == null) {
+            return Optional.empty();
+        }
+        final long start = System.nanoTime();
+        final Optional<ColumnarSeries> series;
+        try {
+            series = store.read(symbol.getId());
+        } catch (IOException e) {
+            System.out.println("Failed to read the snapshot of " + symbol.getTicker() + ", loading it from the source");
+            e.printStackTrace();
+            return Optional.empty();
+        }
+        return series.map(mapped -> {
+            final RollupPyramid pyramid = RollupPyramid.of(mapped);
+            loadListener.accept(mapped);
+            metrics.shardLoaded(false, start, mapped.size());
+            return pyramid;
+        });
+    }
+
+    private RollupPyramid load(Symbol symbol, boolean reload) {
+        final long start = System.nanoTime();
+        final ColumnarSeries series = ColumnarSeries.of(symbol.getId(), source.load(symbol), storage);
+        final RollupPyramid pyramid = RollupPyramid.of(series);
+        loadListener.accept(series);
+        metrics.shardLoaded(reload, start, series.size());
+        return pyramid;
+    }
+
+    private RollupPyramid loadDelta(Symbol symbol, RollupPyramid current) {
+        final long start = System.nanoTime();
+        final ColumnarSeries.Builder rows = new ColumnarSeries.Builder();
+        try (Stream<DataPoint> points = source.loadAfter(symbol, current.raw().lastTimeStamp())) {
+            points.forEach(rows::add);
+        }
+        if (rows.size() == 0) {
+            metrics.shardLoaded(true, start, 0);
+            return current;
+        }
+        final RollupPyramid pyramid = current.append(rows);
+        loadListener.accept(pyramid.raw());
+        metrics.shardLoaded(true, start, rows.size());
+        return pyramid;
+    }
+
+    // Shard updates are serialized, so a series is never appended to by two threads at once
+    private void refresh(Symbol symbol) {
+        final boolean appendOnly = catchingUp.remove(symbol.getId()) || incremental;
+        pyramids.update(symbol.getId(), current -> appendOnly ? loadDelta(symbol, current) : load(symbol, true));
+    }
+
+    @Override
+    public void close() {
+        pyramids.clear();
+    }
+}
@@ -0,0 +1,42 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+
+import java.util.stream.Stream;
+
+/**
+ * Where the columnar store loads the data points of a symbol from
+ */
+interface DataPointSource {
+
+    /**
+     * @param symbol the symbol to load data points of
+     * @return all data points of the symbol, sorted by time stamp
+     */
+    Stream<DataPoint> load(Symbol symbol);
+
+    /**
+     * @param symbol the symbol to load data points of
+     * @param timeStamp the time stamp of the most recent point already loaded
+     * @return the data points of the symbol that are more recent than the given time stamp, sorted by time stamp
+     */
+    Stream<DataPoint> loadAfter(Symbol symbol, long timeStamp);
+
+    /**
+     * @return a source without any data points, for serving only data that is already held
+     */
+    static DataPointSource empty() {
+        return new DataPointSource() {
+            @Override
+            public Stream<DataPoint> load(Symbol symbol) {
+                return Stream.empty();
+            }
+
+            @Override
+            public Stream<DataPoint> loadAfter(Symbol symbol, long timeStamp) {
+                return Stream.empty();
+            }
+        };
+    }
+}
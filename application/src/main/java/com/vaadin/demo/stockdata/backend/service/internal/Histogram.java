@@ -0,0 +1,100 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.service.HistogramSummary;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non negative values that any number of threads can record into without locking.
+ *
+ * Values are counted in logarithmic buckets: every power of two is split into eight linear
+ * sub-buckets, so a reported percentile is at most an eighth above the actual value while the whole
+ * range of long values fits in a few hundred counters. Recording a value is a few atomic
+ * increments and never allocates.
+ */
+final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values below the number of sub-buckets have a bucket each, larger values have the sub-buckets
+     * of one of the remaining powers of two
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param value the value to record, negative values are recorded as zero
+     */
+    void record(long value) {
+        final long recorded = Math.max(0, value);
+        counts.incrementAndGet(bucket(recorded));
+        count.increment();
+        sum.add(recorded);
+        max.accumulate(recorded);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value counted in the given bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Summarizes the values recorded so far. Values recorded while summarizing may be partly
+     * included, which only skews the result by those values.
+     *
+     * @return the summary of all recorded values
+     */
+    HistogramSummary summary() {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        final long maximum = max.get();
+        return new HistogramSummary(total, total == 0 ? 0 : (double) sum.sum() / count.sum(),
+            percentile(snapshot, total, 0.5, maximum),
+            percentile(snapshot, total, 0.9, maximum),
+            percentile(snapshot, total, 0.99, maximum),
+            percentile(snapshot, total, 0.999, maximum),
+            maximum);
+    }
+
+    private static long percentile(long[] snapshot, long total, double quantile, long maximum) {
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= rank) {
+                return Math.min(upperBound(i), maximum);
+            }
+        }
+        return maximum;
+    }
+}
@@ -0,0 +1,149 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.service.CacheStatistics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A size bounded, least recently used cache of history query results shared by all sessions.
+ *
+ * Identical queries arriving while the first one is still being computed wait for its result
+ * instead of computing it again. Like the {@link OverviewCache}, entries remember the generation of
+ * their symbol they were computed for, and invalidating a symbol increases its generation.
+ */
+final class HistoryCache {
+
+    private final Map<Key, Entry> entries;
+    private final AtomicIntegerArray generations;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * @param capacity the maximum number of query results to keep
+     */
+    HistoryCache(int capacity) {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.generations = new AtomicIntegerArray(QuoteTable.MAX_SYMBOL_ID + 1);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * @param symbolId the id of the symbol
+     * @param start start time stamp (inclusive)
+     * @param end end time stamp (inclusive)
+     * @param numberOfPoints the approximate number of points
+     * @param query computes the result if it is neither cached nor being computed
+     * @return the cached result, or the result of the identical query in progress, or a newly
+     *         computed result
+     */
+    List<DataPoint> get(int symbolId, long start, long end, int numberOfPoints, Supplier<List<DataPoint>> query) {
+        final Key key = new Key(symbolId, start, end, numberOfPoints);
+        final int generation = generations.get(symbolId);
+        final Entry entry;
+        final Entry cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+            if (cached != null && cached.generation == generation) {
+                entry = cached;
+            } else {
+                entry = new Entry(new CompletableFuture<>(), generation);
+                entries.put(key, entry);
+            }
+        }
+        // Wait for or compute the result outside the lock, so that other queries are not held up
+        if (entry == cached) {
+            hits.increment();
+            return entry.result.join();
+        }
+        misses.increment();
+        try {
+            entry.result.complete(List.copyOf(query.get()));
+        } catch (RuntimeException | Error e) {
+            // Let the next identical query try again, unless the entry has been replaced already
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+        return entry.result.join();
+    }
+
+    /**
+     * Makes all cached results of the given symbol stale
+     *
+     * @param symbolId the id of the symbol that has been reloaded
+     */
+    void invalidate(int symbolId) {
+        generations.incrementAndGet(symbolId);
+    }
+
+    /**
+     * Removes all cached results, for when the data is looked up in a different way
+     */
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum());
+    }
+
+    private static final class Key {
+        private final int symbolId;
+        private final long start;
+        private final long end;
+        private final int numberOfPoints;
+
+        private Key(int symbolId, long start, long end, int numberOfPoints) {
+            this.symbolId = symbolId;
+            this.start = start;
+            this.end = end;
+            this.numberOfPoints = numberOfPoints;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return symbolId == key.symbolId && start == key.start && end == key.end
+                && numberOfPoints == key.numberOfPoints;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(symbolId, start, end, numberOfPoints);
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<List<DataPoint>> result;
+        private final int generation;
+
+        private Entry(CompletableFuture<List<DataPoint>> result, int generation) {
+            this.result = result;
+            this.generation = generation;
+        }
+    }
+}
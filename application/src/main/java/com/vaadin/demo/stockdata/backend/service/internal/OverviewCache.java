@@ -0,0 +1,88 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.CacheStatistics;
+import com.vaadin.demo.stockdata.backend.service.SymbolOverview;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * A size bounded, least recently used cache of symbol overviews shared by all sessions.
+ *
+ * Each symbol has a generation that is increased when its data is reloaded. Entries remember the
+ * generation they were computed for, so invalidating a symbol is a constant time operation and stale
+ * entries are never returned. They are eventually evicted as the least recently used ones.
+ */
+final class OverviewCache {
+
+    private final Map<Long, Entry> entries;
+    private final AtomicIntegerArray generations;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * @param capacity the maximum number of overviews to keep
+     */
+    OverviewCache(int capacity) {
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.generations = new AtomicIntegerArray(QuoteTable.MAX_SYMBOL_ID + 1);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * @param symbol the symbol to get the overview of
+     * @param numberOfPoints the approximate number of points of the history
+     * @param loader computes the overview if it is not cached
+     * @return the cached overview, or a newly computed one
+     */
+    SymbolOverview get(Symbol symbol, int numberOfPoints, BiFunction<Symbol, Integer, SymbolOverview> loader) {
+        final Long key = ((long) numberOfPoints << Integer.SIZE) | symbol.getId();
+        final int generation = generations.get(symbol.getId());
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.generation == generation) {
+                hits.increment();
+                return entry.overview;
+            }
+        }
+        misses.increment();
+        final SymbolOverview overview = loader.apply(symbol, numberOfPoints);
+        synchronized (entries) {
+            entries.put(key, new Entry(overview, generation));
+        }
+        return overview;
+    }
+
+    /**
+     * Makes all cached overviews of the given symbol stale
+     *
+     * @param symbolId the id of the symbol that has been reloaded
+     */
+    void invalidate(int symbolId) {
+        generations.incrementAndGet(symbolId);
+    }
+
+    CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum());
+    }
+
+    private static final class Entry {
+        private final SymbolOverview overview;
+        private final int generation;
+
+        private Entry(SymbolOverview overview, int generation) {
+            this.overview = overview;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.service.Subscription;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Fans out the data points appended to each symbol to the subscribers of that symbol.
+ *
+ * The time stamp of the latest point of each symbol is remembered whenever its data is loaded, so
+ * that a reload can tell which points are new. Points loaded for the first time are not published,
+ * since subscribers have queried them already. The latest point is remembered also while the data
+ * of a symbol is evicted, so the points appended meanwhile are published when it is loaded again.
+ */
+final class PointBroadcaster {
+
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private final Map<Integer, Set<Consumer<List<DataPoint>>>> subscribers;
+    private final AtomicLongArray latestTimeStamps;
+
+    PointBroadcaster() {
+        this.subscribers = new ConcurrentHashMap<>();
+        this.latestTimeStamps = new AtomicLongArray(QuoteTable.MAX_SYMBOL_ID + 1);
+        for (int symbolId = 0; symbolId <= QuoteTable.MAX_SYMBOL_ID; symbolId++) {
+            latestTimeStamps.set(symbolId, UNKNOWN);
+        }
+    }
+
+    /**
+     * @param symbolId the id of the symbol
+     * @param listener receives the new points of the symbol, in ascending time stamp order
+     * @return the subscription, for cancelling it
+     */
+    Subscription subscribe(int symbolId, Consumer<List<DataPoint>> listener) {
+        subscribers.computeIfAbsent(symbolId, id -> new CopyOnWriteArraySet<>()).add(listener);
+        return () -> subscribers.computeIfPresent(symbolId, (id, listeners) -> {
+            listeners.remove(listener);
+            return listeners.isEmpty() ? null : listeners;
+        });
+    }
+
+    /**
+     * Publishes the points more recent than the latest one seen at the previous load, if any
+     *
+     * @param symbolId the id of the symbol that has been loaded
+     * @param latestTimeStamp the time stamp of the latest point of the symbol after loading
+     * @param pointsAfter gets the points after a given time stamp, in ascending time stamp order
+     */
+    void loaded(int symbolId, long latestTimeStamp, LongFunction<List<DataPoint>> pointsAfter) {
+        final long previous = latestTimeStamps.getAndSet(symbolId, latestTimeStamp);
+        final Set<Consumer<List<DataPoint>>> listeners = subscribers.get(symbolId);
+        if (previous == UNKNOWN || latestTimeStamp <= previous || listeners == null) {
+            return;
+        }
+        final List<DataPoint> points = List.copyOf(pointsAfter.apply(previous));
+        listeners.forEach(listener -> {
+            try {
+                listener.accept(points);
+            } catch (RuntimeException e) {
+                System.out.println("Failed to publish new data points of symbol " + symbolId);
+                e.printStackTrace();
+            }
+        });
+    }
+}
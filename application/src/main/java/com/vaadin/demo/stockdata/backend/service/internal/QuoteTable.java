@@ -0,0 +1,113 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.service.Quote;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * The latest quote of every loaded symbol, indexed directly by symbol id. Lookups are constant time
+ * and allocation free since each entry keeps its results readily wrapped. Entries are replaced
+ * whenever the data of a symbol is loaded or reloaded.
+ */
+final class QuoteTable {
+
+    /**
+     * Symbol ids are unsigned 16 bit integers in the database
+     */
+    static final int MAX_SYMBOL_ID = 0xFFFF;
+
+    private static final Entry EMPTY = new Entry(null);
+
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(MAX_SYMBOL_ID + 1);
+
+    /**
+     * @param symbolId the id of the symbol
+     * @return true if the table has been updated for the given symbol
+     */
+    boolean contains(int symbolId) {
+        return entries.get(symbolId) != null;
+    }
+
+    Optional<Quote> getQuote(int symbolId) {
+        return entry(symbolId).quote;
+    }
+
+    Optional<DataPoint> getLatest(int symbolId) {
+        return entry(symbolId).latest;
+    }
+
+    private Entry entry(int symbolId) {
+        final Entry entry = entries.get(symbolId);
+        return entry == null ? EMPTY : entry;
+    }
+
+    /**
+     * Forgets the quote of a symbol whose data is no longer held in memory
+     *
+     * @param symbolId the id of the symbol
+     */
+    void remove(int symbolId) {
+        entries.set(symbolId, null);
+    }
+
+    /**
+     * Forgets the quotes of all symbols, when they are to be served from other data
+     */
+    void clear() {
+        for (int symbolId = 0; symbolId <= MAX_SYMBOL_ID; symbolId++) {
+            entries.set(symbolId, null);
+        }
+    }
+
+    /**
+     * Updates the quote of a symbol from the last two points of a loaded series
+     *
+     * @param series the series of the symbol
+     */
+    void update(ColumnarSeries series) {
+        final int size = series.size();
+        if (size == 0) {
+            entries.set(series.symbolId(), EMPTY);
+            return;
+        }
+        final long previousClose = series.get(ColumnarSeries.CLOSE, Math.max(0, size - 2));
+        entries.set(series.symbolId(), new Entry(new Quote(series.toDataPoint(size - 1), previousClose)));
+    }
+
+    /**
+     * Updates the quote of a symbol by scanning all of its data points once
+     *
+     * @param symbolId the id of the symbol
+     * @param points all data points of the symbol, in any order
+     */
+    void update(int symbolId, Stream<DataPoint> points) {
+        // The two most recent points seen so far, the most recent first
+        final DataPoint[] recent = new DataPoint[2];
+        try (Stream<DataPoint> stream = points) {
+            stream.forEach(point -> {
+                if (recent[0] == null || point.getTimeStamp() > recent[0].getTimeStamp()) {
+                    recent[1] = recent[0];
+                    recent[0] = point;
+                } else if (recent[1] == null || point.getTimeStamp() > recent[1].getTimeStamp()) {
+                    recent[1] = point;
+                }
+            });
+        }
+        entries.set(symbolId, recent[0] == null
+            ? EMPTY
+            : new Entry(new Quote(recent[0], (recent[1] == null ? recent[0] : recent[1]).getClose())));
+    }
+
+    private static final class Entry {
+        private final Optional<Quote> quote;
+        private final Optional<DataPoint> latest;
+
+        private Entry(Quote quote) {
+            this.quote = Optional.ofNullable(quote);
+            this.latest = this.quote.map(Quote::getLatest);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Periodically reloads the data of all symbols using a single timer thread and a bounded pool of
+ * reload threads. The first reload of each symbol happens after a random delay of between half and one
+ * and a half interval, so that reloads are spread out over time rather than all hitting the database
+ * at once. When more reloads
+ * are due than there are reload threads, the reloads of the most recently queried symbols run first.
+ */
+final class ReloadScheduler implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final ScheduledExecutorService timer;
+    private final ThreadPoolExecutor workers;
+    private final AtomicLongArray lastQueried;
+
+    /**
+     * @param concurrency the maximum number of reloads running at the same time
+     */
+    ReloadScheduler(int concurrency) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("reload-timer"));
+        this.workers = new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.MINUTES,
+            new PriorityBlockingQueue<>(), daemonThreadFactory("reload-worker"));
+        this.workers.allowCoreThreadTimeOut(true);
+        this.lastQueried = new AtomicLongArray(QuoteTable.MAX_SYMBOL_ID + 1);
+    }
+
+    static ThreadFactory daemonThreadFactory(String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * @param concurrency the maximum number of reloads running at the same time
+     */
+    void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("The reload concurrency must be at least 1");
+        }
+        if (concurrency > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(concurrency);
+            workers.setCorePoolSize(concurrency);
+        } else {
+            workers.setCorePoolSize(concurrency);
+            workers.setMaximumPoolSize(concurrency);
+        }
+    }
+
+    /**
+     * @return the number of due reloads waiting for a reload thread
+     */
+    int getQueuedReloads() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Records that the data of a symbol has been queried, which gives its reloads priority.
+     *
+     * @param symbolId the id of the queried symbol
+     */
+    void touch(int symbolId) {
+        lastQueried.lazySet(symbolId, System.currentTimeMillis());
+    }
+
+    /**
+     * Schedules periodic reloads of the data of a symbol. A reload is skipped if the previous reload of
+     * the same registration has not yet completed, so reloads of a symbol never overlap.
+     *
+     * @param symbolId the id of the symbol to reload
+     * @param interval the delay between reloads
+     * @param reload the action reloading the data of the symbol
+     * @return a registration for cancelling the reloads
+     */
+    Registration register(int symbolId, Duration interval, Runnable reload) {
+        final long millis = interval.toMillis();
+        final long initialDelay = ThreadLocalRandom.current().nextLong(Math.max(1, millis)) + millis / 2;
+        final Registration registration = new Registration(symbolId, Objects.requireNonNull(reload));
+        registration.timerTask = timer.scheduleWithFixedDelay(registration::due, initialDelay, millis, TimeUnit.MILLISECONDS);
+        return registration;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The periodic reloads of one symbol
+     */
+    final class Registration {
+        private final int symbolId;
+        private final Runnable reload;
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> timerTask;
+
+        private Registration(int symbolId, Runnable reload) {
+            this.symbolId = symbolId;
+            this.reload = reload;
+        }
+
+        private void due() {
+            if (!cancelled && pending.compareAndSet(false, true)) {
+                workers.execute(new ReloadTask(this, lastQueried.get(symbolId)));
+            }
+        }
+
+        private void run() {
+            try {
+                if (!cancelled) {
+                    reload.run();
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Failed to reload data for symbol " + symbolId);
+                e.printStackTrace();
+            } finally {
+                pending.set(false);
+            }
+        }
+
+        /**
+         * Runs a reload as soon as a reload thread is available, in addition to the periodic ones
+         */
+        void runSoon() {
+            due();
+        }
+
+        /**
+         * Stops further reloads. A reload already running is allowed to complete.
+         */
+        void cancel() {
+            cancelled = true;
+            final ScheduledFuture<?> task = timerTask;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * A due reload, ordered before reloads of less recently queried symbols
+     */
+    private static final class ReloadTask implements Runnable, Comparable<ReloadTask> {
+        private final Registration registration;
+        private final long lastQueried;
+
+        private ReloadTask(Registration registration, long lastQueried) {
+            this.registration = registration;
+            this.lastQueried = lastQueried;
+        }
+
+        @Override
+        public void run() {
+            registration.run();
+        }
+
+        @Override
+        public int compareTo(ReloadTask other) {
+            return Long.compare(other.lastQueried, lastQueried);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The raw data points of a symbol together with precomputed OHLC rollups at increasingly coarse
+ * resolutions. History queries are answered from the coarsest resolution that still has the
+ * requested number of points within the range, so a query over the full history costs about the
+ * same as a query over a single day.
+ */
+final class RollupPyramid {
+
+    /**
+     * Bucket lengths of the rollup levels, in seconds, from finest to coarsest
+     */
+    private static final long[] LEVEL_SECONDS = {
+        TimeUnit.MINUTES.toSeconds(1),
+        TimeUnit.HOURS.toSeconds(1),
+        TimeUnit.DAYS.toSeconds(1),
+        TimeUnit.DAYS.toSeconds(7)
+    };
+
+    /**
+     * Epoch second of the first Monday after the epoch, so that weekly candles start on Mondays
+     */
+    private static final long BUCKET_OFFSET = TimeUnit.DAYS.toSeconds(4);
+
+    private final ColumnarSeries raw;
+
+    /**
+     * The raw series followed by each distinct rollup, from finest to coarsest
+     */
+    private final ColumnarSeries[] levels;
+
+    /**
+     * The bucket length of each level, in seconds, or zero for the raw series
+     */
+    private final long[] levelSeconds;
+
+    /**
+     * The number of raw points when the levels were chosen
+     */
+    private final int shapedSize;
+
+    private RollupPyramid(ColumnarSeries[] levels, long[] levelSeconds, int shapedSize) {
+        this.raw = levels[0];
+        this.levels = levels;
+        this.levelSeconds = levelSeconds;
+        this.shapedSize = shapedSize;
+    }
+
+    /**
+     * Builds all rollup levels of the given series. Each level is aggregated from the level below,
+     * and levels that would not reduce the number of points are left out.
+     *
+     * @param raw the raw data points of a symbol
+     * @return a pyramid over the given series
+     */
+    static RollupPyramid of(ColumnarSeries raw) {
+        final List<ColumnarSeries> levels = new ArrayList<>();
+        final long[] levelSeconds = new long[LEVEL_SECONDS.length + 1];
+        levels.add(raw);
+        ColumnarSeries previous = raw;
+        for (long seconds : LEVEL_SECONDS) {
+            final ColumnarSeries level = previous.rollup(seconds, BUCKET_OFFSET);
+            if (level.size() < previous.size()) {
+                levelSeconds[levels.size()] = seconds;
+                levels.add(level);
+                previous = level;
+            }
+        }
+        return new RollupPyramid(levels.toArray(new ColumnarSeries[0]), Arrays.copyOf(levelSeconds, levels.size()),
+            raw.size());
+    }
+
+    /**
+     * Creates a pyramid with the given raw points added. Only the last candle of each level and the
+     * candles after it are recomputed, from the candles of the level below starting at the bucket
+     * of that last candle.
+     *
+     * Levels left out when the pyramid was built may reduce the number of points once more points
+     * have been added, so all levels are built again from the raw points whenever some are missing
+     * and the raw series has doubled in size since they were chosen.
+     *
+     * @param rows the raw points to add, more recent than all points of this pyramid
+     * @return a new pyramid with the given points added
+     */
+    RollupPyramid append(ColumnarSeries.Builder rows) {
+        final ColumnarSeries appended = raw.append(rows, false);
+        if (levels.length <= LEVEL_SECONDS.length && appended.size() >= 2L * Math.max(shapedSize, 1)) {
+            return of(appended);
+        }
+        final ColumnarSeries[] updated = new ColumnarSeries[levels.length];
+        updated[0] = appended;
+        for (int level = 1; level < levels.length; level++) {
+            final ColumnarSeries current = levels[level];
+            final ColumnarSeries below = updated[level - 1];
+            if (current.isEmpty()) {
+                updated[level] = below.rollup(levelSeconds[level], BUCKET_OFFSET);
+            } else {
+                final int from = below.lowerBound(current.lastTimeStamp());
+                updated[level] = current.append(below.rollup(from, levelSeconds[level], BUCKET_OFFSET), true);
+            }
+        }
+        return new RollupPyramid(updated, levelSeconds, shapedSize);
+    }
+
+    ColumnarSeries raw() {
+        return raw;
+    }
+
+    /**
+     * @return the number of bytes allocated for the columns of all levels
+     */
+    long bytes() {
+        long bytes = 0;
+        for (ColumnarSeries level : levels) {
+            bytes += level.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Selects approximately the given number of points within the given time range from the
+     * coarsest level having at least that many points in the range.
+     *
+     * @param start start time stamp (inclusive)
+     * @param end end time stamp (inclusive)
+     * @param numberOfPoints approximate number of points to return
+     * @return the selected points, in ascending time stamp order
+     */
+    Stream<DataPoint> sieve(long start, long end, int numberOfPoints) {
+        return levelFor(start, end, numberOfPoints).sieve(start, end, numberOfPoints);
+    }
+
+    private ColumnarSeries levelFor(long start, long end, int numberOfPoints) {
+        for (int level = levels.length - 1; level > 0; level--) {
+            final ColumnarSeries series = levels[level];
+            if (series.upperBound(end) - series.lowerBound(start) >= numberOfPoints) {
+                return series;
+            }
+        }
+        return raw;
+    }
+}
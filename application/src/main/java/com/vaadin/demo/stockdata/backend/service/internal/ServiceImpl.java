@@ -4,7 +4,6 @@ import com.speedment.enterprise.datastore.runtime.DataStoreBundle;
 import com.speedment.enterprise.datastore.runtime.DataStoreComponent;
 import com.speedment.enterprise.datastore.runtime.StreamSupplierComponentDecorator;
 import com.speedment.enterprise.datastore.runtime.collector.SieveCollector;
-import com.speedment.enterprise.sharding.MutableShardedSpeedment;
 import com.speedment.enterprise.virtualcolumn.runtime.VirtualColumnBundle;
 import com.speedment.runtime.core.ApplicationBuilder;
 import com.speedment.runtime.core.Speedment;
@@ -15,15 +14,47 @@ import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPo
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPointManager;
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.SymbolManager;
+import com.vaadin.demo.stockdata.backend.service.CacheStatistics;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+import com.vaadin.demo.stockdata.backend.service.HistogramSummary;
+import com.vaadin.demo.stockdata.backend.service.Quote;
 import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.ServiceMetricsMXBean;
+import com.vaadin.demo.stockdata.backend.service.Subscription;
+import com.vaadin.demo.stockdata.backend.service.SymbolOverview;
+import com.vaadin.demo.stockdata.backend.service.WarmUp;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ServiceImpl implements Service {
@@ -39,20 +70,151 @@ public class ServiceImpl implements Service {
      */
     private static final int MAXIMUM_GRANULARITY_STEP = (int) TimeUnit.SECONDS.convert(1, TimeUnit.DAYS);
 
+    /**
+     * The maximum number of symbol overviews shared between all sessions
+     */
+    private static final int OVERVIEW_CACHE_CAPACITY = 10_000;
+
+    /**
+     * The maximum number of history query results shared between all sessions
+     */
+    private static final int HISTORY_CACHE_CAPACITY = 2_000;
+
+    /**
+     * The maximum number of symbol search results shared between all sessions
+     */
+    private static final int SYMBOL_SEARCH_CACHE_CAPACITY = 1_000;
+
+    /**
+     * The delay between reloads of each shard of the Speedment in memory acceleration
+     */
+    private static final Duration SHARD_RELOAD_INTERVAL = Duration.ofMinutes(2);
+
+    /**
+     * The default maximum number of shards being reloaded at the same time
+     */
+    private static final int DEFAULT_RELOAD_CONCURRENCY = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    /**
+     * The estimated memory footprint of a data point held by the Speedment in memory acceleration,
+     * used for weighing its shards against the memory budget
+     */
+    private static final long ACCELERATED_BYTES_PER_POINT = 64;
+
+    /**
+     * Numbers the services registered with the platform MBean server
+     */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /**
+     * The application connected to the database, or null when serving data offline
+     */
     private final Speedment sqlApp;
-    private final MutableShardedSpeedment<Symbol> shardedApp;
-    private Function<Symbol, Stream<DataPoint>> dataPointProducer;
+    private final DataPointSource dataPointSource;
+    private final ShardCache<AcceleratedShard> shardedApp;
+    private final Map<Integer, ReloadScheduler.Registration> shardReloads;
+    private long memoryBudget = Long.MAX_VALUE;
+    private volatile boolean accelerated;
+    private volatile ColumnarStore columnarStore;
+    private Duration refreshInterval = ColumnarStore.DEFAULT_REFRESH_INTERVAL;
+    private boolean incrementalRefresh;
+    private SnapshotStore snapshotStore;
+    private ScheduledFuture<?> snapshotWrites;
+    private final ScheduledExecutorService snapshotWriter;
+    private final QuoteTable quotes;
+    private final OverviewCache overviewCache;
+    private final HistoryCache historyCache;
+    private final PointBroadcaster broadcaster;
+    private volatile SymbolRegistry symbolRegistry;
+    private final ThreadPoolExecutor queryExecutor;
+    private final ThreadPoolExecutor historyExecutor;
+    private final ThreadPoolExecutor dataStoreExecutor;
+    private final ReloadScheduler reloadScheduler;
+    private final ServiceMetrics metrics;
+    private final ObjectName metricsName;
     private final String user;
     private final String password;
     private final String hostIp;
 
     public ServiceImpl(String hostIp, String user, String password) {
+        this(hostIp, user, password, null, null);
+    }
+
+    /**
+     * Creates a service that never connects to a database. All data points are served from the
+     * columnar store, loaded from the given source, so the Speedment in memory acceleration and
+     * direct SQL are not available.
+     *
+     * @param source supplies the data points of each symbol
+     * @param symbols all symbols
+     * @param storage where to keep the columns of the columnar store
+     */
+    ServiceImpl(DataPointSource source, Collection<Symbol> symbols, ColumnStorage storage) {
+        this(null, null, null, Objects.requireNonNull(source), SymbolRegistry.of(symbols.stream(), SYMBOL_SEARCH_CACHE_CAPACITY));
+        withColumnarStore(storage);
+    }
+
+    /**
+     * Creates a read only service serving the data of a snapshot directory, see
+     * {@link Service#openSnapshots(Path)}. Snapshots are never written, and refreshes only look for
+     * points after the held ones, of which there are none, so the mapped data is never replaced.
+     *
+     * @param directory the directory holding the snapshot files
+     * @return a service serving the snapshots
+     */
+    public static ServiceImpl openSnapshots(Path directory) {
+        final List<Symbol> symbols;
+        try {
+            symbols = new SnapshotStore(directory).readSymbols();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the snapshot of the symbols in " + directory, e);
+        }
+        final ServiceImpl service = new ServiceImpl(DataPointSource.empty(), symbols, ColumnStorage.OFF_HEAP);
+        service.withIncrementalRefresh(ColumnarStore.DEFAULT_REFRESH_INTERVAL);
+        service.withSnapshots(directory, null);
+        return service;
+    }
+
+    private ServiceImpl(String hostIp, String user, String password, DataPointSource offlineSource, SymbolRegistry offlineSymbols) {
         this.hostIp = hostIp;
         this.user = user;
         this.password = password;
-        sqlApp = createSqlApp();
-        shardedApp = MutableShardedSpeedment.create(Symbol.class);
-        dataPointProducer = getDataPointSupplier(true);
+        sqlApp = offlineSource == null ? createSqlApp() : null;
+        dataPointSource = offlineSource == null ? new SqlDataPointSource() : offlineSource;
+        symbolRegistry = offlineSymbols;
+        shardedApp = new ShardCache<>(memoryBudget, AcceleratedShard::bytes, this::shardEvicted);
+        shardReloads = new ConcurrentHashMap<>();
+        quotes = new QuoteTable();
+        overviewCache = new OverviewCache(OVERVIEW_CACHE_CAPACITY);
+        historyCache = new HistoryCache(HISTORY_CACHE_CAPACITY);
+        broadcaster = new PointBroadcaster();
+        metrics = new ServiceMetrics();
+        queryExecutor = fixedThreadPool(Runtime.getRuntime().availableProcessors(), "service-query");
+        historyExecutor = fixedThreadPool(Runtime.getRuntime().availableProcessors(), "history-query");
+        dataStoreExecutor = fixedThreadPool(DEFAULT_RELOAD_CONCURRENCY, "data-store-load");
+        reloadScheduler = new ReloadScheduler(DEFAULT_RELOAD_CONCURRENCY);
+        snapshotWriter = Executors.newSingleThreadScheduledExecutor(ReloadScheduler.daemonThreadFactory("snapshot-writer"));
+        withAcceleration(sqlApp != null);
+        metricsName = registerMetrics();
+    }
+
+    // Typed as a thread pool executor, for reading its queue depth
+    private static ThreadPoolExecutor fixedThreadPool(int threads, String name) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            ReloadScheduler.daemonThreadFactory(name));
+    }
+
+    private ObjectName registerMetrics() {
+        try {
+            final ObjectName name = new ObjectName("com.vaadin.demo.stockdata:type=Service,name=service-"
+                + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), name);
+            return name;
+        } catch (JMException e) {
+            System.out.println("Failed to register the service metrics with JMX");
+            e.printStackTrace();
+            return null;
+        }
     }
 
     private Speedment createSqlApp() {
@@ -65,7 +227,39 @@ public class ServiceImpl implements Service {
         return builder.build();
     }
 
-    private Speedment acceleratedApplicationBuilder(Symbol symbol) {
+    /**
+     * @return the shard of the symbol, loading it if needed, which the caller must release when done with it
+     */
+    private AcceleratedShard acquireShard(Symbol symbol) {
+        reloadScheduler.touch(symbol.getId());
+        while (true) {
+            final AcceleratedShard shard = shardedApp.get(symbol.getId(), id -> acceleratedApplicationBuilder(symbol));
+            if (shard.acquire()) {
+                return shard;
+            }
+            // Evicted and closed since being looked up, so it is loaded again
+        }
+    }
+
+    /**
+     * Runs a query over the data points of a symbol, from its in memory shard if accelerated. The
+     * shard is not closed while the query runs, even if evicted in the meantime.
+     */
+    private <R> R queryDataPoints(Symbol symbol, Function<Stream<DataPoint>, R> query) {
+        if (!accelerated) {
+            return query.apply(sqlApp.getOrThrow(DataPointManager.class)
+                .stream()
+                .filter(DataPoint.SYMBOL_ID.equal(symbol.getId())));
+        }
+        final AcceleratedShard shard = acquireShard(symbol);
+        try {
+            return query.apply(shard.application.getOrThrow(DataPointManager.class).stream());
+        } finally {
+            shard.release();
+        }
+    }
+
+    private AcceleratedShard acceleratedApplicationBuilder(Symbol symbol) {
         final StockdataApplicationBuilder builder = new StockdataApplicationBuilder()
             .withUsername(user)
             .withPassword(password)
@@ -78,7 +272,6 @@ public class ServiceImpl implements Service {
         final StockdataApplication application = builder.build();
 
         DataStoreComponent dataStoreComponent = application.getOrThrow(DataStoreComponent.class);
-        ExecutorService executor = Executors.newSingleThreadExecutor();
 
         // A decorator to filter out the data for this particular shard
         final StreamSupplierComponentDecorator streamDecorator = StreamSupplierComponentDecorator.builder()
@@ -87,14 +280,68 @@ public class ServiceImpl implements Service {
             .build();
 
         // make first load in current Thread to ensure we have loaded when returning
-        dataStoreComponent.load(executor, streamDecorator);
+        final long loadStart = System.nanoTime();
+        dataStoreComponent.load(dataStoreExecutor, streamDecorator);
+        final long points = dataLoaded(symbol, application);
+        metrics.shardLoaded(false, loadStart, points);
+
+        // Setup periodic reload of the data store, shared with all other shards. Reloading within the
+        // shard update skips shards evicted in the meantime and weighs the shard again.
+        shardReloads.put(symbol.getId(), reloadScheduler.register(symbol.getId(), SHARD_RELOAD_INTERVAL,
+            () -> shardedApp.update(symbol.getId(), shard -> {
+                final long reloadStart = System.nanoTime();
+                dataStoreComponent.reload(dataStoreExecutor, streamDecorator);
+                final long reloaded = dataLoaded(symbol, application);
+                metrics.shardLoaded(true, reloadStart, reloaded);
+                return shard.reloaded(reloaded);
+            })));
 
-        // Setup periodic reload of the data store
-        Executors.newSingleThreadScheduledExecutor()
-            .scheduleWithFixedDelay(() ->
-                dataStoreComponent.reload(executor, streamDecorator),2, 2, TimeUnit.MINUTES);
+        return new AcceleratedShard(application, points);
+    }
+
+    private void shardEvicted(int symbolId, AcceleratedShard shard) {
+        final ReloadScheduler.Registration reload = shardReloads.remove(symbolId);
+        if (reload != null) {
+            reload.cancel();
+        }
+        shard.release();
+        dataEvicted(symbolId);
+    }
+
+    /**
+     * @return the number of data points loaded
+     */
+    private long dataLoaded(Symbol symbol, Speedment application) {
+        final DataPointManager dataPoints = application.getOrThrow(DataPointManager.class);
+        quotes.update(symbol.getId(), dataPoints.stream());
+        overviewCache.invalidate(symbol.getId());
+        historyCache.invalidate(symbol.getId());
+        quotes.getLatest(symbol.getId()).ifPresent(latest ->
+            broadcaster.loaded(symbol.getId(), latest.getTimeStamp(), after -> dataPoints.stream()
+                .filter(DataPoint.TIME_STAMP.greaterThan(after))
+                .sorted(DataPoint.TIME_STAMP)
+                .collect(Collectors.toList())));
+        return dataPoints.stream().count();
+    }
+
+    private void dataLoaded(ColumnarSeries series) {
+        quotes.update(series);
+        overviewCache.invalidate(series.symbolId());
+        historyCache.invalidate(series.symbolId());
+        if (!series.isEmpty()) {
+            broadcaster.loaded(series.symbolId(), series.lastTimeStamp(), after -> {
+                final List<DataPoint> points = new ArrayList<>();
+                for (int i = series.upperBound(after); i < series.size(); i++) {
+                    points.add(series.toDataPoint(i));
+                }
+                return points;
+            });
+        }
+    }
 
-        return application;
+    // Overviews are kept since they still hold valid data, only the quote would no longer be refreshed
+    private void dataEvicted(int symbolId) {
+        quotes.remove(symbolId);
     }
 
     private String getLicenseKey() {
@@ -104,55 +351,571 @@ public class ServiceImpl implements Service {
 
     @Override
     public Service withAcceleration(boolean accelerate) {
-        dataPointProducer = getDataPointSupplier(accelerate);
+        accelerated = accelerate;
+        quotes.clear();
+        historyCache.clear();
+        return this;
+    }
+
+    @Override
+    public synchronized Service withColumnarStore(ColumnStorage storage) {
+        if (storage == ColumnStorage.NONE && sqlApp == null) {
+            throw new IllegalStateException("Without a database, data can only be served from the columnar store");
+        }
+        if (columnarStore != null) {
+            columnarStore.close();
+        }
+        if (storage == ColumnStorage.NONE) {
+            columnarStore = null;
+        } else {
+            columnarStore = new ColumnarStore(dataPointSource, storage, this::dataLoaded, this::dataEvicted,
+                reloadScheduler, memoryBudget, metrics);
+            columnarStore.setSnapshots(snapshotStore);
+            columnarStore.scheduleRefresh(refreshInterval, incrementalRefresh);
+        }
+        // Quotes indexed from the previous store would no longer be updated
+        quotes.clear();
+        historyCache.clear();
+        return this;
+    }
+
+    @Override
+    public synchronized Service withIncrementalRefresh(Duration interval) {
+        refreshInterval = interval == null ? ColumnarStore.DEFAULT_REFRESH_INTERVAL : interval;
+        incrementalRefresh = interval != null;
+        if (columnarStore != null) {
+            columnarStore.scheduleRefresh(refreshInterval, incrementalRefresh);
+        }
+        return this;
+    }
+
+    @Override
+    public Service withReloadConcurrency(int maxConcurrentReloads) {
+        reloadScheduler.setConcurrency(maxConcurrentReloads);
         return this;
     }
 
-    private Function<Symbol, Stream<DataPoint>> getDataPointSupplier(boolean accelerate) {
-        return accelerate
-            ?
-            symbol -> shardedApp
-                .computeIfAbsent(symbol, this::acceleratedApplicationBuilder)
-                .getOrThrow(DataPointManager.class)
+    @Override
+    public synchronized Service withMemoryBudget(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("The memory budget shall be positive");
+        }
+        memoryBudget = bytes;
+        shardedApp.setBudget(bytes);
+        if (columnarStore != null) {
+            columnarStore.setMemoryBudget(bytes);
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized Service withSnapshots(Path directory, Duration interval) {
+        if (snapshotWrites != null) {
+            snapshotWrites.cancel(false);
+            snapshotWrites = null;
+        }
+        try {
+            snapshotStore = directory == null ? null : new SnapshotStore(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the snapshot directory " + directory, e);
+        }
+        if (columnarStore != null) {
+            columnarStore.setSnapshots(snapshotStore);
+        }
+        if (snapshotStore != null && interval != null) {
+            final long millis = interval.toMillis();
+            snapshotWrites = snapshotWriter.scheduleWithFixedDelay(this::writeSnapshots, millis, millis, TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    private void writeSnapshots() {
+        final SnapshotStore store;
+        final ColumnarStore columns;
+        synchronized (this) {
+            store = snapshotStore;
+            columns = columnarStore;
+        }
+        if (store == null || columns == null) {
+            return;
+        }
+        try {
+            store.writeSymbols(symbolRegistry().stream());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Failed to write the snapshot of the symbols");
+            e.printStackTrace();
+            return;
+        }
+        columns.writeSnapshots();
+    }
+
+    @Override
+    public WarmUp warmUp(long maxSymbols, int parallelism) {
+        final List<Symbol> symbols = getSymbols().limit(maxSymbols).collect(Collectors.toList());
+        final WarmUp warmUp = new WarmUp(symbols.size());
+        final ExecutorService warmUpExecutor = Executors.newFixedThreadPool(parallelism,
+            ReloadScheduler.daemonThreadFactory("warm-up"));
+        // Report about every tenth of the way
+        final int reportEvery = Math.max(1, symbols.size() / 10);
+        symbols.forEach(symbol -> warmUpExecutor.execute(() -> {
+            int processed;
+            try {
+                ensureQuoteIndexed(symbol);
+                processed = warmUp.symbolCompleted();
+            } catch (RuntimeException e) {
+                System.out.println("Failed to warm up data for " + symbol.getTicker());
+                e.printStackTrace();
+                processed = warmUp.symbolFailed();
+            } catch (Error e) {
+                // Such as running out of memory, the warm up will not complete, but must not be waited for forever
+                System.out.println("Failed to warm up data for " + symbol.getTicker() + ", ending the warm up");
+                warmUp.fail(e);
+                throw e;
+            }
+            if (processed % reportEvery == 0 || processed == symbols.size()) {
+                System.out.println("Warm up: " + warmUp);
+            }
+        }));
+        warmUpExecutor.shutdown();
+        return warmUp;
+    }
+
+    @Override
+    public void close() {
+        // Let a periodic snapshot write in progress finish before writing the final snapshots, it
+        // takes the lock of the service, so it must not be waited for while holding it
+        snapshotWriter.shutdown();
+        try {
+            if (!snapshotWriter.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println("Gave up waiting for the snapshot writes to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            reloadScheduler.close();
+            if (snapshotWrites != null) {
+                // Write the latest points, so that the next start has less to catch up with
+                writeSnapshots();
+            }
+            if (columnarStore != null) {
+                columnarStore.close();
+            }
+            shardedApp.clear();
+            queryExecutor.shutdownNow();
+            historyExecutor.shutdownNow();
+            dataStoreExecutor.shutdownNow();
+            if (sqlApp != null) {
+                sqlApp.close();
+            }
+            if (metricsName != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+                } catch (JMException e) {
+                    System.out.println("Failed to unregister the service metrics from JMX");
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * A symbol's Speedment application holding its data points in memory. The application is
+     * closed once the shard has been evicted and released by every query using it.
+     */
+    private static final class AcceleratedShard {
+        private final Speedment application;
+        private final long points;
+        // One held by the shard cache until evicted, and one by each query using the application
+        private final AtomicInteger references;
+
+        private AcceleratedShard(Speedment application, long points) {
+            this(application, points, new AtomicInteger(1));
+        }
+
+        private AcceleratedShard(Speedment application, long points, AtomicInteger references) {
+            this.application = application;
+            this.points = points;
+            this.references = references;
+        }
+
+        /**
+         * @return the same application, weighed with the given number of points
+         */
+        private AcceleratedShard reloaded(long points) {
+            return new AcceleratedShard(application, points, references);
+        }
+
+        private long bytes() {
+            return points * ACCELERATED_BYTES_PER_POINT;
+        }
+
+        /**
+         * @return false if the application has already been closed
+         */
+        private boolean acquire() {
+            int current;
+            do {
+                current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                application.close();
+            }
+        }
+    }
+
+    /**
+     * The metrics of this service, combining the recorded measurements with the current state of
+     * its shards, executors and caches
+     */
+    private final class Metrics implements ServiceMetricsMXBean {
+        @Override
+        public Map<String, HistogramSummary> getOperationLatencies() {
+            return metrics.operationLatencies();
+        }
+
+        @Override
+        public HistogramSummary getShardLoadLatency() {
+            return metrics.loadLatency();
+        }
+
+        @Override
+        public HistogramSummary getShardReloadLatency() {
+            return metrics.reloadLatency();
+        }
+
+        @Override
+        public HistogramSummary getShardLoadRows() {
+            return metrics.loadRows();
+        }
+
+        @Override
+        public HistogramSummary getShardReloadRows() {
+            return metrics.reloadRows();
+        }
+
+        @Override
+        public int getLoadedShards() {
+            final ColumnarStore columns = columnarStore;
+            return shardedApp.size() + (columns == null ? 0 : columns.size());
+        }
+
+        @Override
+        public long getShardMemoryBytes() {
+            final ColumnarStore columns = columnarStore;
+            return shardedApp.getUsedBytes() + (columns == null ? 0 : columns.getUsedBytes());
+        }
+
+        @Override
+        public long getMemoryBudgetBytes() {
+            return shardedApp.getBudget();
+        }
+
+        @Override
+        public Map<Integer, Long> getShardMemoryBytesBySymbolId() {
+            final Map<Integer, Long> bytes = new HashMap<>(shardedApp.getBytesBySymbolId());
+            final ColumnarStore columns = columnarStore;
+            if (columns != null) {
+                columns.getBytesBySymbolId().forEach((symbolId, columnBytes) -> bytes.merge(symbolId, columnBytes, Long::sum));
+            }
+            return bytes;
+        }
+
+        @Override
+        public Map<String, Integer> getExecutorQueueDepths() {
+            final Map<String, Integer> depths = new LinkedHashMap<>();
+            depths.put("service-query", queryExecutor.getQueue().size());
+            depths.put("history-query", historyExecutor.getQueue().size());
+            depths.put("data-store-load", dataStoreExecutor.getQueue().size());
+            depths.put("reload", reloadScheduler.getQueuedReloads());
+            return depths;
+        }
+
+        @Override
+        public Map<String, CacheStatistics> getCacheStatistics() {
+            final Map<String, CacheStatistics> statistics = new LinkedHashMap<>();
+            statistics.put("history", historyCache.getStatistics());
+            statistics.put("overview", overviewCache.getStatistics());
+            final SymbolRegistry registry = symbolRegistry;
+            statistics.put("symbol-search", registry == null ? new CacheStatistics(0, 0) : registry.getStatistics());
+            return statistics;
+        }
+    }
+
+    /**
+     * Loads the data points of a symbol from the database, letting the database do the sorting
+     */
+    private final class SqlDataPointSource implements DataPointSource {
+        @Override
+        public Stream<DataPoint> load(Symbol symbol) {
+            return sqlApp.getOrThrow(DataPointManager.class)
                 .stream()
-            :
-            symbol -> sqlApp.getOrThrow(DataPointManager.class)
+                .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
+                .sorted(DataPoint.TIME_STAMP);
+        }
+
+        @Override
+        public Stream<DataPoint> loadAfter(Symbol symbol, long timeStamp) {
+            return sqlApp.getOrThrow(DataPointManager.class)
                 .stream()
-                .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()));
+                .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
+                .filter(DataPoint.TIME_STAMP.greaterThan(timeStamp))
+                .sorted(DataPoint.TIME_STAMP);
+        }
     }
 
     @Override
     public Stream<DataPoint> getHistoryData(Symbol symbol, LocalDateTime startTime, LocalDateTime endTime, int numberOfPoints) {
+        final long start = System.nanoTime();
+        try {
+            return historyData(symbol, startTime, endTime, numberOfPoints).stream();
+        } finally {
+            metrics.record(ServiceMetrics.Operation.GET_HISTORY_DATA, start);
+        }
+    }
+
+    private List<DataPoint> historyData(Symbol symbol, LocalDateTime startTime, LocalDateTime endTime, int numberOfPoints) {
         if (numberOfPoints < 2) {
             throw new IllegalArgumentException("The number of points returned shall always be more than 2");
         }
         long start = startTime.toEpochSecond(ZoneOffset.UTC);
         long end = endTime.toEpochSecond(ZoneOffset.UTC);
+        // Round the range outwards, by less than the distance between two returned points, so that
+        // queries for nearly the same range share the same cached result
+        final long quantum = Long.highestOneBit(Math.max(1, (end - start) / numberOfPoints));
+        final long quantizedStart = Math.floorDiv(start, quantum) * quantum;
+        final long quantizedEnd = Math.floorDiv(end, quantum) * quantum + quantum - 1;
+        if (!isCacheInvalidated()) {
+            return queryHistoryData(symbol, quantizedStart, quantizedEnd, numberOfPoints);
+        }
+        return historyCache.get(symbol.getId(), quantizedStart, quantizedEnd, numberOfPoints,
+            () -> queryHistoryData(symbol, quantizedStart, quantizedEnd, numberOfPoints));
+    }
+
+    /**
+     * @return true if the data is held in memory, so that cached results are invalidated whenever
+     *         the data of their symbol is loaded again. Data queried from the database directly may
+     *         change at any time, so results are not cached then.
+     */
+    private boolean isCacheInvalidated() {
+        return columnarStore != null || accelerated;
+    }
+
+    private List<DataPoint> queryHistoryData(Symbol symbol, long start, long end, int numberOfPoints) {
+        final ColumnarStore columns = columnarStore;
+        if (columns != null) {
+            return columns.get(symbol).sieve(start, end, numberOfPoints).collect(Collectors.toList());
+        }
         long range = end - start;
         double step = range / (numberOfPoints - 1);  // The number of steps if dividing evenly over given range
         int granularity = Math.min(
             MAXIMUM_GRANULARITY_STEP,
             Math.max(1, (int)step)
         );
-        return dataPointProducer.apply(symbol)
+        return queryDataPoints(symbol, points -> points
             .filter(DataPoint.TIME_STAMP.between(start, end, Inclusion.START_INCLUSIVE_END_INCLUSIVE))
             .sorted(DataPoint.TIME_STAMP)
             .collect(SieveCollector.of(
                 DataPoint.TIME_STAMP,
                 numberOfPoints,
                 granularity
-            )).get();
+            )).get()
+            .collect(Collectors.toList()));
+    }
+
+    @Override
+    public CompletableFuture<List<DataPoint>> getHistoryDataAsync(Symbol symbol, LocalDateTime startTime,
+                                                                  LocalDateTime endTime, int numberOfPoints) {
+        final long start = System.nanoTime();
+        final CompletableFuture<List<DataPoint>> result = new CompletableFuture<>();
+        final Future<?> query = historyExecutor.submit(() -> {
+            // Skip queries superseded while waiting for a thread
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(historyData(symbol, startTime, endTime, numberOfPoints));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((points, failure) -> {
+            // Never interrupt a running query, its result may be awaited by identical queries
+            // through the history cache, and an interrupt may break the pooled connection
+            if (result.isCancelled()) {
+                query.cancel(false);
+            }
+            metrics.record(ServiceMetrics.Operation.GET_HISTORY_DATA_ASYNC, start);
+        });
+        return result;
     }
 
     @Override
     public Optional<DataPoint> getMostRecentDataPoint(Symbol symbol) {
-        return dataPointProducer.apply(symbol)
+        final long start = System.nanoTime();
+        try {
+            return mostRecentDataPoint(symbol);
+        } finally {
+            metrics.record(ServiceMetrics.Operation.GET_MOST_RECENT_DATA_POINT, start);
+        }
+    }
+
+    private Optional<DataPoint> mostRecentDataPoint(Symbol symbol) {
+        if (ensureQuoteIndexed(symbol)) {
+            return quotes.getLatest(symbol.getId());
+        }
+        return queryDataPoints(symbol, points -> points
             .sorted(DataPoint.TIME_STAMP.comparator().reversed())
-            .findFirst();
+            .findFirst());
+    }
+
+    @Override
+    public Optional<Quote> getQuote(Symbol symbol) {
+        final long start = System.nanoTime();
+        try {
+            return quote(symbol);
+        } finally {
+            metrics.record(ServiceMetrics.Operation.GET_QUOTE, start);
+        }
+    }
+
+    private Optional<Quote> quote(Symbol symbol) {
+        if (ensureQuoteIndexed(symbol)) {
+            return quotes.getQuote(symbol.getId());
+        }
+        final List<DataPoint> recent = queryDataPoints(symbol, points -> points
+            .sorted(DataPoint.TIME_STAMP.comparator().reversed())
+            .limit(2)
+            .collect(Collectors.toList()));
+        return recent.isEmpty()
+            ? Optional.empty()
+            : Optional.of(new Quote(recent.get(0), recent.get(recent.size() - 1).getClose()));
+    }
+
+    /**
+     * Makes sure the data of the given symbol is loaded in memory, if in memory data is used,
+     * which keeps the quote table updated for the symbol.
+     *
+     * @param symbol the symbol to look up
+     * @return true if the quote of the symbol is available in the quote table
+     */
+    private boolean ensureQuoteIndexed(Symbol symbol) {
+        if (quotes.contains(symbol.getId())) {
+            return columnarStore != null || accelerated;
+        }
+        // Data loaded before the quotes were cleared is indexed here, loading it indexes it anyway
+        final ColumnarStore columns = columnarStore;
+        if (columns != null) {
+            final ColumnarSeries series = columns.get(symbol).raw();
+            if (!quotes.contains(symbol.getId())) {
+                quotes.update(series);
+            }
+            return true;
+        }
+        if (accelerated) {
+            final AcceleratedShard shard = acquireShard(symbol);
+            try {
+                if (!quotes.contains(symbol.getId())) {
+                    quotes.update(symbol.getId(), shard.application.getOrThrow(DataPointManager.class).stream());
+                }
+            } finally {
+                shard.release();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<SymbolOverview> getOverviews(Collection<Symbol> symbols, int numberOfPoints) {
+        final long start = System.nanoTime();
+        try {
+            return overviews(symbols, numberOfPoints);
+        } finally {
+            metrics.record(ServiceMetrics.Operation.GET_OVERVIEWS, start);
+        }
+    }
+
+    private List<SymbolOverview> overviews(Collection<Symbol> symbols, int numberOfPoints) {
+        // Like history results, overviews are only cached while invalidated by the loads of their symbol
+        final boolean cached = isCacheInvalidated();
+        final List<CompletableFuture<SymbolOverview>> overviews = symbols.stream()
+            .map(symbol -> CompletableFuture.supplyAsync(
+                () -> cached
+                    ? overviewCache.get(symbol, numberOfPoints, this::getOverview)
+                    : getOverview(symbol, numberOfPoints),
+                queryExecutor))
+            .collect(Collectors.toList());
+        return overviews.stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.toList());
+    }
+
+    private SymbolOverview getOverview(Symbol symbol, int numberOfPoints) {
+        final List<DataPoint> history = historyData(symbol, LocalDateTime.MIN, LocalDateTime.MAX, numberOfPoints);
+        return new SymbolOverview(symbol, history, quote(symbol).orElse(null));
+    }
+
+    @Override
+    public Subscription subscribe(Symbol symbol, Consumer<List<DataPoint>> listener) {
+        return broadcaster.subscribe(symbol.getId(), listener);
+    }
+
+    @Override
+    public CacheStatistics getHistoryCacheStatistics() {
+        return historyCache.getStatistics();
     }
 
     @Override
     public Stream<Symbol> getSymbols() {
-        return sqlApp.getOrThrow(SymbolManager.class).stream();
+        // Not measured, since the stream is consumed after returning
+        return symbolRegistry().stream();
+    }
+
+    @Override
+    public List<Symbol> findSymbols(String filter, int offset, int limit) {
+        final long start = System.nanoTime();
+        try {
+            return symbolRegistry().find(filter, offset, limit);
+        } finally {
+            metrics.record(ServiceMetrics.Operation.FIND_SYMBOLS, start);
+        }
+    }
+
+    @Override
+    public int countSymbols(String filter) {
+        final long start = System.nanoTime();
+        try {
+            return symbolRegistry().count(filter);
+        } finally {
+            metrics.record(ServiceMetrics.Operation.COUNT_SYMBOLS, start);
+        }
+    }
+
+    @Override
+    public ServiceMetricsMXBean getMetrics() {
+        return new Metrics();
+    }
+
+    // The symbols are read from the database once, on first use
+    private SymbolRegistry symbolRegistry() {
+        SymbolRegistry registry = symbolRegistry;
+        if (registry == null) {
+            synchronized (this) {
+                registry = symbolRegistry;
+                if (registry == null) {
+                    registry = SymbolRegistry.of(sqlApp.getOrThrow(SymbolManager.class).stream(), SYMBOL_SEARCH_CACHE_CAPACITY);
+                    symbolRegistry = registry;
+                }
+            }
+        }
+        return registry;
     }
 }
@@ -0,0 +1,91 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.service.HistogramSummary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latencies of the service methods and the loads of symbol data, in microseconds.
+ * Recording is lock free, so it is done on every call of the query paths.
+ */
+final class ServiceMetrics {
+
+    /**
+     * The measured public methods of the service
+     */
+    enum Operation {
+        GET_HISTORY_DATA("getHistoryData"),
+        GET_HISTORY_DATA_ASYNC("getHistoryDataAsync"),
+        GET_MOST_RECENT_DATA_POINT("getMostRecentDataPoint"),
+        GET_QUOTE("getQuote"),
+        GET_OVERVIEWS("getOverviews"),
+        FIND_SYMBOLS("findSymbols"),
+        COUNT_SYMBOLS("countSymbols");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+    }
+
+    private final Histogram[] operations = new Histogram[Operation.values().length];
+    private final Histogram loadLatency = new Histogram();
+    private final Histogram reloadLatency = new Histogram();
+    private final Histogram loadRows = new Histogram();
+    private final Histogram reloadRows = new Histogram();
+
+    ServiceMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @param operation the method that has returned
+     * @param startNanos the {@link System#nanoTime()} when the method was called
+     */
+    void record(Operation operation, long startNanos) {
+        operations[operation.ordinal()].record(micros(startNanos));
+    }
+
+    /**
+     * @param reload true if data already held has been reloaded or refreshed, false for a first load
+     * @param startNanos the {@link System#nanoTime()} when the load started
+     * @param rows the number of data points read
+     */
+    void shardLoaded(boolean reload, long startNanos, long rows) {
+        (reload ? reloadLatency : loadLatency).record(micros(startNanos));
+        (reload ? reloadRows : loadRows).record(rows);
+    }
+
+    private static long micros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    Map<String, HistogramSummary> operationLatencies() {
+        final Map<String, HistogramSummary> latencies = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation.methodName, operations[operation.ordinal()].summary());
+        }
+        return latencies;
+    }
+
+    HistogramSummary loadLatency() {
+        return loadLatency.summary();
+    }
+
+    HistogramSummary reloadLatency() {
+        return reloadLatency.summary();
+    }
+
+    HistogramSummary loadRows() {
+        return loadRows.summary();
+    }
+
+    HistogramSummary reloadRows() {
+        return reloadRows.summary();
+    }
+}
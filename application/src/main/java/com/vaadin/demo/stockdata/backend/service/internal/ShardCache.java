@@ -0,0 +1,163 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * The in memory shards of all loaded symbols, kept within a memory budget. Each shard is weighed in
+ * bytes when it is loaded or replaced. When the total exceeds the budget, the least recently used
+ * shards are evicted until it does not, except for the shard just accessed. An evicted shard is
+ * transparently loaded again on its next access.
+ *
+ * @param <T> the type of the shards
+ */
+final class ShardCache<T> {
+
+    private final Map<Integer, Entry<T>> shards;
+    private final ToLongFunction<T> weigher;
+    private final BiConsumer<Integer, T> evictionListener;
+    private final AtomicLong usedBytes;
+    private volatile long budgetBytes;
+
+    /**
+     * @param budgetBytes the memory budget in bytes
+     * @param weigher computes the memory footprint of a shard in bytes
+     * @param evictionListener notified with the symbol id and shard of each evicted shard, for releasing its resources
+     */
+    ShardCache(long budgetBytes, ToLongFunction<T> weigher, BiConsumer<Integer, T> evictionListener) {
+        this.shards = new ConcurrentHashMap<>();
+        this.weigher = Objects.requireNonNull(weigher);
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        this.usedBytes = new AtomicLong();
+        this.budgetBytes = budgetBytes;
+    }
+
+    void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evictIfNeeded(-1);
+    }
+
+    long getBudget() {
+        return budgetBytes;
+    }
+
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    int size() {
+        return shards.size();
+    }
+
+    /**
+     * @return the weighed bytes of each shard, by symbol id
+     */
+    Map<Integer, Long> getBytesBySymbolId() {
+        final Map<Integer, Long> bytes = new HashMap<>();
+        shards.forEach((symbolId, entry) -> bytes.put(symbolId, entry.bytes));
+        return bytes;
+    }
+
+    /**
+     * @param action called with the symbol id and shard of each loaded shard, without counting as an access
+     */
+    void forEach(BiConsumer<Integer, T> action) {
+        shards.forEach((symbolId, entry) -> action.accept(symbolId, entry.value));
+    }
+
+    /**
+     * @param symbolId the id of the symbol
+     * @param loader loads the shard of the symbol if it is not loaded
+     * @return the shard of the symbol
+     */
+    T get(int symbolId, IntFunction<T> loader) {
+        Entry<T> entry = shards.get(symbolId);
+        if (entry == null) {
+            final boolean[] loaded = new boolean[1];
+            entry = shards.computeIfAbsent(symbolId, id -> {
+                final T shard = loader.apply(id);
+                final long bytes = weigher.applyAsLong(shard);
+                usedBytes.addAndGet(bytes);
+                loaded[0] = true;
+                return new Entry<>(shard, bytes);
+            });
+            entry.lastAccess = System.nanoTime();
+            if (loaded[0]) {
+                evictIfNeeded(symbolId);
+            }
+            return entry.value;
+        }
+        entry.lastAccess = System.nanoTime();
+        return entry.value;
+    }
+
+    /**
+     * Replaces the shard of a symbol, if loaded, and weighs the new shard. Replacements of the same
+     * symbol are serialized.
+     *
+     * @param symbolId the id of the symbol
+     * @param update computes the new shard from the current one
+     */
+    void update(int symbolId, UnaryOperator<T> update) {
+        shards.computeIfPresent(symbolId, (id, current) -> {
+            final T shard = update.apply(current.value);
+            if (shard == current.value) {
+                return current;
+            }
+            final Entry<T> replacement = new Entry<>(shard, weigher.applyAsLong(shard));
+            replacement.lastAccess = current.lastAccess;
+            usedBytes.addAndGet(replacement.bytes - current.bytes);
+            return replacement;
+        });
+        evictIfNeeded(symbolId);
+    }
+
+    private void evictIfNeeded(int keptSymbolId) {
+        while (usedBytes.get() > budgetBytes) {
+            Map.Entry<Integer, Entry<T>> coldest = null;
+            for (Map.Entry<Integer, Entry<T>> candidate : shards.entrySet()) {
+                if (candidate.getKey() != keptSymbolId
+                    && (coldest == null || candidate.getValue().lastAccess < coldest.getValue().lastAccess)) {
+                    coldest = candidate;
+                }
+            }
+            if (coldest == null) {
+                return;
+            }
+            if (shards.remove(coldest.getKey(), coldest.getValue())) {
+                usedBytes.addAndGet(-coldest.getValue().bytes);
+                evictionListener.accept(coldest.getKey(), coldest.getValue().value);
+            }
+        }
+    }
+
+    /**
+     * Evicts all shards
+     */
+    void clear() {
+        shards.forEach((symbolId, entry) -> {
+            if (shards.remove(symbolId, entry)) {
+                usedBytes.addAndGet(-entry.bytes);
+                evictionListener.accept(symbolId, entry.value);
+            }
+        });
+    }
+
+    private static final class Entry<T> {
+        private final T value;
+        private final long bytes;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(T value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+}
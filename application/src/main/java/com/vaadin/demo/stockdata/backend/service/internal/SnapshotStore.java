@@ -0,0 +1,191 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.SymbolImpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Binary snapshot files of the raw series of each symbol, and of all symbols, in one directory.
+ *
+ * A series file starts with a header of five little endian longs: a magic number, the format
+ * version, the symbol id, the number of points and the time stamp of the most recent point, which
+ * is the watermark to catch up from. The columns of the series follow, one after the other. Files
+ * are read by memory mapping them, so a series is available as soon as its file is opened and its
+ * pages are loaded by the operating system as they are accessed.
+ *
+ * Files are written to a temporary file and then atomically moved in place, so readers only ever
+ * see complete files, and a file that is still mapped stays valid after being replaced. Files of
+ * another format version are ignored, making the data be loaded from its source instead.
+ */
+final class SnapshotStore {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final long MAGIC = 0x53544F434B534E50L; // "STOCKSNP"
+    private static final int HEADER_LONGS = 5;
+    private static final String SERIES_PREFIX = "symbol-";
+    private static final String SUFFIX = ".snapshot";
+    private static final String SYMBOLS_FILE = "symbols" + SUFFIX;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * The size of the largest file that can be mapped as a single buffer. The largest series a
+     * {@link ColumnarSeries} can hold almost fills it, leaving no room for the header.
+     */
+    private static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    private final Path directory;
+
+    /**
+     * The watermark of the snapshot of each symbol, for skipping symbols without new points
+     */
+    private final AtomicLongArray watermarks;
+
+    /**
+     * @param directory the directory holding the snapshot files, created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    SnapshotStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.watermarks = new AtomicLongArray(QuoteTable.MAX_SYMBOL_ID + 1);
+        for (int i = 0; i < watermarks.length(); i++) {
+            watermarks.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    private Path seriesFile(int symbolId) {
+        return directory.resolve(SERIES_PREFIX + symbolId + SUFFIX);
+    }
+
+    /**
+     * @param symbolId the id of the symbol
+     * @return the series of the symbol mapped from its snapshot file, or empty if there is no
+     *         snapshot of the current format version
+     * @throws IOException if the file exists but cannot be read
+     */
+    Optional<ColumnarSeries> read(int symbolId) throws IOException {
+        final Path file = seriesFile(symbolId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        final MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > MAX_FILE_BYTES) {
+                throw new IOException("Snapshot " + file + " of " + channel.size() + " bytes is larger than the "
+                    + MAX_FILE_BYTES + " bytes that can be mapped");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final LongBuffer longs = mapped.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        if (longs.remaining() < HEADER_LONGS || longs.get(0) != MAGIC || longs.get(1) != FORMAT_VERSION) {
+            System.out.println("Ignoring snapshot " + file + " of another format version");
+            return Optional.empty();
+        }
+        final int size = (int) longs.get(3);
+        if (longs.get(2) != symbolId || size < 0 || longs.remaining() < HEADER_LONGS + (long) size * ColumnarSeries.COLUMNS) {
+            throw new IOException("Corrupt snapshot " + file);
+        }
+        watermarks.set(symbolId, longs.get(4));
+        longs.position(HEADER_LONGS);
+        return Optional.of(ColumnarSeries.wrap(symbolId, size, longs.slice()));
+    }
+
+    /**
+     * Writes the snapshot of a series, unless the snapshot already holds its most recent point.
+     *
+     * @param series the series to write
+     * @return true if the snapshot has been written
+     * @throws IOException if the file cannot be written
+     */
+    boolean write(ColumnarSeries series) throws IOException {
+        final long watermark = series.lastTimeStamp();
+        if (watermarks.get(series.symbolId()) == watermark) {
+            return false;
+        }
+        final Path file = seriesFile(series.symbolId());
+        final Path temporary = directory.resolve(file.getFileName() + TEMPORARY_SUFFIX);
+        final long longs = HEADER_LONGS + (long) series.size() * ColumnarSeries.COLUMNS;
+        if (longs * Long.BYTES > MAX_FILE_BYTES) {
+            throw new IOException("Series of symbol " + series.symbolId() + " with " + series.size()
+                + " points is too large for a snapshot file of at most " + MAX_FILE_BYTES + " bytes");
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, longs * Long.BYTES);
+            final LongBuffer target = mapped.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            target.put(MAGIC).put(FORMAT_VERSION).put(series.symbolId()).put(series.size()).put(watermark);
+            series.writeColumns(target);
+            mapped.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        watermarks.set(series.symbolId(), watermark);
+        return true;
+    }
+
+    /**
+     * @return all symbols of the snapshot, in the order they were written
+     * @throws IOException if there is no snapshot of the symbols or it cannot be read
+     */
+    List<Symbol> readSymbols() throws IOException {
+        final List<Symbol> symbols = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(SYMBOLS_FILE))))) {
+            if (in.readLong() != MAGIC || in.readLong() != FORMAT_VERSION) {
+                throw new IOException("Snapshot of the symbols in " + directory + " has another format version");
+            }
+            while (true) {
+                final int id;
+                try {
+                    id = in.readInt();
+                } catch (EOFException e) {
+                    return symbols;
+                }
+                symbols.add(new SymbolImpl()
+                    .setId(id)
+                    .setTicker(in.readUTF())
+                    .setName(in.readUTF()));
+            }
+        }
+    }
+
+    /**
+     * @param symbols all symbols, replacing the previous snapshot of the symbols
+     * @throws IOException if the file cannot be written
+     */
+    void writeSymbols(Stream<Symbol> symbols) throws IOException {
+        final Path file = directory.resolve(SYMBOLS_FILE);
+        final Path temporary = directory.resolve(SYMBOLS_FILE + TEMPORARY_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeLong(MAGIC);
+            out.writeLong(FORMAT_VERSION);
+            for (Symbol symbol : (Iterable<Symbol>) symbols::iterator) {
+                out.writeInt(symbol.getId());
+                out.writeUTF(symbol.getTicker() == null ? "" : symbol.getTicker());
+                out.writeUTF(symbol.getName() == null ? "" : symbol.getName());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
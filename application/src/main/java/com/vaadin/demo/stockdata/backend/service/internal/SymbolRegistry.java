@@ -0,0 +1,217 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.CacheStatistics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * All symbols of the database held in memory, indexed by id and searchable by any part of their
+ * ticker or name.
+ *
+ * Searches use a trigram index: each symbol is listed under every three character substring of its
+ * ticker and name, so the candidates for a filter are found from the shortest list among the
+ * trigrams of the filter. Filters shorter than three characters scan all symbols, which is still
+ * cheap for a few thousand symbols. The sorted result of each filter is cached, so paging through
+ * the results and counting them does not search again.
+ */
+final class SymbolRegistry {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final int[] NO_MATCHES = new int[0];
+
+    /**
+     * All symbols, in the order of the database
+     */
+    private final Symbol[] symbols;
+
+    /**
+     * Symbols by id, null for ids without a symbol
+     */
+    private final Symbol[] symbolsById;
+
+    private final String[] tickers;
+    private final String[] names;
+
+    /**
+     * The positions of the symbols having each trigram in their ticker or name, in ascending order
+     */
+    private final Map<String, int[]> trigrams;
+
+    private final Map<String, int[]> results;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private SymbolRegistry(List<Symbol> symbols, int resultCacheCapacity) {
+        this.symbols = symbols.toArray(new Symbol[0]);
+        this.symbolsById = new Symbol[QuoteTable.MAX_SYMBOL_ID + 1];
+        this.tickers = new String[this.symbols.length];
+        this.names = new String[this.symbols.length];
+        final Map<String, List<Integer>> postings = new HashMap<>();
+        for (int position = 0; position < this.symbols.length; position++) {
+            final Symbol symbol = this.symbols[position];
+            symbolsById[symbol.getId()] = symbol;
+            tickers[position] = normalize(symbol.getTicker());
+            names[position] = normalize(symbol.getName());
+            addTrigrams(postings, tickers[position], position);
+            addTrigrams(postings, names[position], position);
+        }
+        this.trigrams = new HashMap<>();
+        postings.forEach((gram, positions) -> trigrams.put(gram, positions.stream().mapToInt(Integer::intValue).toArray()));
+        this.results = new LinkedHashMap<String, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                return size() > resultCacheCapacity;
+            }
+        };
+    }
+
+    /**
+     * @param symbols all symbols of the database
+     * @param resultCacheCapacity the maximum number of filters to keep the result of
+     * @return a registry of the given symbols
+     */
+    static SymbolRegistry of(Stream<Symbol> symbols, int resultCacheCapacity) {
+        try (Stream<Symbol> stream = symbols) {
+            return new SymbolRegistry(stream.collect(Collectors.toList()), resultCacheCapacity);
+        }
+    }
+
+    private static void addTrigrams(Map<String, List<Integer>> postings, String text, int position) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            final List<Integer> positions = postings.computeIfAbsent(text.substring(i, i + GRAM_LENGTH), gram -> new ArrayList<>());
+            // The same trigram may occur more than once in a symbol
+            if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+                positions.add(position);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param id the id of a symbol
+     * @return the symbol with the given id
+     */
+    Optional<Symbol> get(int id) {
+        return id < 0 || id >= symbolsById.length ? Optional.empty() : Optional.ofNullable(symbolsById[id]);
+    }
+
+    /**
+     * @return all symbols, in the order of the database
+     */
+    Stream<Symbol> stream() {
+        return Arrays.stream(symbols);
+    }
+
+    /**
+     * @param filter the text to look for in the ticker or name, ignoring case
+     * @param offset the index of the first symbol to return
+     * @param limit the maximum number of symbols to return
+     * @return the matching symbols, with tickers equal to the filter first, then tickers starting
+     *         with the filter, then all other matches, each in the order of the database
+     */
+    List<Symbol> find(String filter, int offset, int limit) {
+        final int[] positions = search(filter);
+        final int from = Math.min(offset, positions.length);
+        final int to = (int) Math.min((long) from + limit, positions.length);
+        final List<Symbol> found = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            found.add(symbols[positions[i]]);
+        }
+        return found;
+    }
+
+    /**
+     * @param filter the text to look for in the ticker or name, ignoring case
+     * @return the number of matching symbols
+     */
+    int count(String filter) {
+        return search(filter).length;
+    }
+
+    private int[] search(String filter) {
+        final String query = normalize(filter);
+        synchronized (results) {
+            final int[] cached = results.get(query);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+        final int[] positions = rank(query, matches(query));
+        synchronized (results) {
+            results.put(query, positions);
+        }
+        return positions;
+    }
+
+    /**
+     * @return the number of searches answered from the results cache, and the number computed
+     */
+    CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum());
+    }
+
+    private int[] matches(String query) {
+        if (query.length() < GRAM_LENGTH) {
+            final int[] all = new int[symbols.length];
+            Arrays.setAll(all, i -> i);
+            return query.isEmpty() ? all : Arrays.stream(all).filter(i -> contains(i, query)).toArray();
+        }
+        int[] candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            final int[] positions = trigrams.get(query.substring(i, i + GRAM_LENGTH));
+            if (positions == null) {
+                return NO_MATCHES;
+            }
+            if (candidates == null || positions.length < candidates.length) {
+                candidates = positions;
+            }
+        }
+        // Having all trigrams does not mean having them next to each other
+        return Arrays.stream(candidates).filter(i -> contains(i, query)).toArray();
+    }
+
+    private boolean contains(int position, String query) {
+        return tickers[position].contains(query) || names[position].contains(query);
+    }
+
+    private int[] rank(String query, int[] matches) {
+        if (query.isEmpty()) {
+            return matches;
+        }
+        final int[] ranked = new int[matches.length];
+        int next = 0;
+        for (int position : matches) {
+            if (tickers[position].equals(query)) {
+                ranked[next++] = position;
+            }
+        }
+        for (int position : matches) {
+            if (tickers[position].startsWith(query) && !tickers[position].equals(query)) {
+                ranked[next++] = position;
+            }
+        }
+        for (int position : matches) {
+            if (!tickers[position].startsWith(query)) {
+                ranked[next++] = position;
+            }
+        }
+        return ranked;
+    }
+}
@@ -3,10 +3,14 @@ package com.vaadin.demo.stockdata.ui;
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
 import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.Subscription;
 import com.vaadin.demo.stockdata.ui.components.StockChart;
+import com.vaadin.demo.stockdata.ui.data.ChartDataRanges;
+import com.vaadin.demo.stockdata.ui.util.LiveUpdates;
 import com.vaadin.demo.stockdata.ui.util.MoneyFormatter;
 import com.vaadin.demo.stockdata.ui.util.ServiceDirectory;
 import com.vaadin.flow.component.ComponentUtil;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.Text;
 import com.vaadin.flow.component.charts.events.XAxesExtremesSetEvent;
 import com.vaadin.flow.component.charts.model.DataSeries;
@@ -21,8 +25,11 @@ import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @StyleSheet("frontend://styles/stock-details.css")
@@ -33,8 +40,24 @@ public class StockDetails extends VerticalLayout implements StockList.SymbolSele
    */
   private static final int DATA_POINT_BATCH_SIZE = 300;
 
+  /**
+   * Approximate number of data points the chart holds at most
+   */
+  private static final int MAX_CHART_POINTS = 20 * DATA_POINT_BATCH_SIZE;
+
   private Service service = ServiceDirectory.getServiceInstance();
 
+  // The history queries whose results are to be shown next, only accessed while holding the session lock
+  private List<CompletableFuture<List<DataPoint>>> pendingQueries;
+
+  // The range last shown by the chart, only accessed while holding the session lock
+  private LocalDateTime viewStart;
+  private LocalDateTime viewEnd;
+
+  // New data points of the selected symbol, pushed to the chart and the current value
+  private Subscription liveSubscription;
+  private Span currentValue;
+
 
   StockDetails() {
     addClassName("stock-details");
@@ -52,6 +75,9 @@ public class StockDetails extends VerticalLayout implements StockList.SymbolSele
 
   @Override
   public void symbolSelected(Symbol symbol) {
+    cancelPendingQuery();
+    cancelLiveUpdates();
+    currentValue = null;
     removeAll();
 
     if (symbol != null) {
@@ -65,7 +91,7 @@ public class StockDetails extends VerticalLayout implements StockList.SymbolSele
   private void addSymbolDetailsLayout(Symbol symbol) {
     service.getMostRecentDataPoint(symbol).ifPresent(dataPoint -> {
 
-      Span currentValue = new Span(MoneyFormatter.format(dataPoint.getClose()));
+      currentValue = new Span(MoneyFormatter.format(dataPoint.getClose()));
       Div ticker = new Div(new Text(symbol.getTicker()));
       Div name = new Div(new Text(symbol.getName()));
       Div companyInfo = new Div(ticker, name);
@@ -84,13 +110,128 @@ public class StockDetails extends VerticalLayout implements StockList.SymbolSele
   }
 
 
-  private List<DataSeriesItem> getSymbolData(Symbol symbol, LocalDateTime startDate, LocalDateTime endDate) {
-    return service.getHistoryData(symbol, startDate, endDate, DATA_POINT_BATCH_SIZE)
-        .map(this::toChartItem)
-        .collect(Collectors.toList());
+  // Query in the background, without holding the session lock, and show the result once done.
+  // Only the parts of the range for which the chart lacks points as close to each other as wanted
+  // are queried and sent. The previous queries are cancelled since their results would be
+  // replaced by these ones anyway. Once the chart would hold too many points, the points outside
+  // of the range are dropped and the whole range is sent instead.
+  private void showSymbolData(StockChart chart, ChartDataRanges heldRanges, Symbol symbol,
+                              LocalDateTime startDate, LocalDateTime endDate) {
+    cancelPendingQuery();
+    viewStart = startDate;
+    viewEnd = endDate;
+    long start = startDate.toEpochSecond(ZoneOffset.UTC);
+    long end = endDate.toEpochSecond(ZoneOffset.UTC);
+    long step = Math.max(1, (end - start + 1) / DATA_POINT_BATCH_SIZE);
+    List<ChartDataRanges.Range> lacking = heldRanges.missing(start, end, step);
+    if (lacking.isEmpty()) {
+      return;
+    }
+    boolean replace = heldRanges.getPointCount() + lacking.size() * DATA_POINT_BATCH_SIZE > MAX_CHART_POINTS;
+    List<ChartDataRanges.Range> missing = replace
+        ? Collections.singletonList(new ChartDataRanges.Range(start, end, step))
+        : lacking;
+    getUI().ifPresent(ui -> {
+      List<CompletableFuture<List<DataPoint>>> queries = missing.stream()
+          .map(range -> service.getHistoryDataAsync(symbol,
+              LocalDateTime.ofEpochSecond(range.getStart(), 0, ZoneOffset.UTC),
+              LocalDateTime.ofEpochSecond(range.getEnd(), 0, ZoneOffset.UTC),
+              pointCount(range)))
+          .collect(Collectors.toList());
+      pendingQueries = queries;
+      CompletableFuture.allOf(queries.toArray(new CompletableFuture<?>[0]))
+          .thenApply(done -> new FetchedPoints(missing, queries))
+          .thenAccept(fetched -> ui.access(() -> {
+            // Newer queries may have completed first
+            if (queries == pendingQueries) {
+              pendingQueries = null;
+              if (replace) {
+                heldRanges.clear();
+                chart.replaceSeriesData(0, fetched.packedData);
+              } else {
+                chart.mergeSeriesData(0, fetched.packedData, missing);
+              }
+              fetched.ranges.forEach(heldRanges::add);
+            }
+          }))
+          .exceptionally(e -> {
+            if (queries.stream().noneMatch(CompletableFuture::isCancelled)) {
+              System.out.println("Failed to get history data for " + symbol.getTicker());
+              e.printStackTrace();
+            }
+            return null;
+          });
+    });
   }
 
-  private OhlcItem toChartItem(DataPoint dataPoint) {
+  private static int pointCount(ChartDataRanges.Range range) {
+    return (int) Math.max(2, Math.min(DATA_POINT_BATCH_SIZE, range.getLength() / range.getStep()));
+  }
+
+  /**
+   * The points returned for the queried ranges, packed for the chart, and the ranges with the
+   * distance between the points actually returned. A range may extend far beyond its points, like
+   * the one of the whole history, so the distance is taken from the span of the points rather than
+   * the length of the range.
+   */
+  private static class FetchedPoints {
+    private final String packedData;
+    private final List<ChartDataRanges.Range> ranges = new ArrayList<>();
+
+    private FetchedPoints(List<ChartDataRanges.Range> queried, List<CompletableFuture<List<DataPoint>>> results) {
+      List<DataPoint> points = new ArrayList<>();
+      for (int i = 0; i < queried.size(); i++) {
+        ChartDataRanges.Range range = queried.get(i);
+        // The results of history queries may extend a bit beyond the queried ranges
+        List<DataPoint> within = results.get(i).join().stream()
+            .filter(dataPoint -> dataPoint.getTimeStamp() >= range.getStart() && dataPoint.getTimeStamp() <= range.getEnd())
+            .collect(Collectors.toList());
+        long step = range.getStep();
+        if (within.size() >= 2) {
+          long span = within.get(within.size() - 1).getTimeStamp() - within.get(0).getTimeStamp();
+          // Fewer points than asked for are all the points there are, so they satisfy the wanted distance
+          step = Math.max(1, Math.min(step, span / (within.size() - 1)));
+        }
+        ranges.add(new ChartDataRanges.Range(range.getStart(), range.getEnd(), step, within.size()));
+        points.addAll(within);
+      }
+      this.packedData = StockChart.pack(points);
+    }
+  }
+
+  // Append new points to the chart as they arrive, instead of querying the whole series again
+  private void subscribeToLiveUpdates(DataSeries dataSeries, Symbol symbol) {
+    getUI().ifPresent(ui -> liveSubscription = LiveUpdates.of(ui).subscribe(service, symbol, dataPoints -> {
+      dataPoints.forEach(dataPoint -> dataSeries.add(toChartItem(dataPoint), true, false));
+      if (currentValue != null && !dataPoints.isEmpty()) {
+        currentValue.setText(MoneyFormatter.format(dataPoints.get(dataPoints.size() - 1).getClose()));
+      }
+    }));
+  }
+
+  private void cancelLiveUpdates() {
+    if (liveSubscription != null) {
+      liveSubscription.cancel();
+      liveSubscription = null;
+    }
+  }
+
+  private void cancelPendingQuery() {
+    if (pendingQueries != null) {
+      pendingQueries.forEach(query -> query.cancel(true));
+      pendingQueries = null;
+    }
+  }
+
+  @Override
+  protected void onDetach(DetachEvent detachEvent) {
+    cancelPendingQuery();
+    cancelLiveUpdates();
+    super.onDetach(detachEvent);
+  }
+
+  // Only used for the few points pushed as they arrive, whole series are sent packed
+  private DataSeriesItem toChartItem(DataPoint dataPoint) {
     OhlcItem ohlcItem = new OhlcItem();
     ohlcItem.setOpen(dataPoint.getOpen() / 100.0);
     ohlcItem.setHigh(dataPoint.getHigh() / 100.0);
@@ -105,18 +246,29 @@ public class StockDetails extends VerticalLayout implements StockList.SymbolSele
 
     DataSeries dataSeries = new DataSeries();
     dataSeries.setName("Value");
-    dataSeries.setData(getSymbolData(symbol, LocalDateTime.MIN, LocalDateTime.MAX));
     chart.getConfiguration().setSeries(dataSeries);
+    ChartDataRanges heldRanges = new ChartDataRanges();
+    showSymbolData(chart, heldRanges, symbol, LocalDateTime.MIN, LocalDateTime.MAX);
+    subscribeToLiveUpdates(dataSeries, symbol);
+
+    // An attached chart is rendered from its configuration, which only holds the points pushed as
+    // they arrived, so the history sent packed has to be sent again
+    chart.addAttachListener(event -> {
+      if (!event.isInitialAttach()) {
+        heldRanges.clear();
+        showSymbolData(chart, heldRanges, symbol, viewStart, viewEnd);
+        if (liveSubscription == null) {
+          subscribeToLiveUpdates(dataSeries, symbol);
+        }
+      }
+    });
 
 
     //Use ComponentUtil to debounce the events - no need to hit the db on each
-    ComponentUtil.addListener(chart, XAxesExtremesSetEvent.class, event -> {
-          List<DataSeriesItem> zoomedData = getSymbolData(symbol,
+    ComponentUtil.addListener(chart, XAxesExtremesSetEvent.class, event ->
+          showSymbolData(chart, heldRanges, symbol,
               toLocalDateTime(event.getMinimum()),
-              toLocalDateTime(event.getMaximum()));
-          dataSeries.setData(zoomedData);
-          getUI().ifPresent(ui -> ui.access(dataSeries::updateSeries));
-        },
+              toLocalDateTime(event.getMaximum())),
         r -> r.debounce(500));
 
     add(chart);
@@ -125,7 +277,8 @@ public class StockDetails extends VerticalLayout implements StockList.SymbolSele
 
 
   private LocalDateTime toLocalDateTime(Double jsTimestamp) {
-    return Instant.ofEpochMilli(jsTimestamp.longValue()).atZone(ZoneId.systemDefault()).toLocalDateTime();
+    // The same offset as used by the backend, so that held ranges match the time stamps of the points
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(jsTimestamp.longValue()), ZoneOffset.UTC);
   }
 
 
@@ -2,10 +2,14 @@ package com.vaadin.demo.stockdata.ui;
 
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
 import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.Subscription;
+import com.vaadin.demo.stockdata.backend.service.SymbolOverview;
 import com.vaadin.demo.stockdata.ui.components.StockGrid;
 import com.vaadin.demo.stockdata.ui.data.StockItem;
+import com.vaadin.demo.stockdata.ui.util.LiveUpdates;
 import com.vaadin.demo.stockdata.ui.util.MoneyFormatter;
 import com.vaadin.demo.stockdata.ui.util.ServiceDirectory;
+import com.vaadin.flow.component.DetachEvent;
 import com.vaadin.flow.component.dependency.JsModule;
 import com.vaadin.flow.component.dependency.StyleSheet;
 import com.vaadin.flow.component.icon.VaadinIcon;
@@ -14,16 +18,22 @@ import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.provider.DataProvider;
 import com.vaadin.flow.data.value.ValueChangeMode;
 
-import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @JsModule("./src/sparkline-chart.js")
 @StyleSheet("frontend://styles/stock-list.css")
 public class StockList extends VerticalLayout {
+
+  /**
+   * The number of most recently fetched rows that are kept updated with new data points
+   */
+  private static final int LIVE_ROWS = 100;
+
   public interface SymbolSelectedListener {
     void symbolSelected(Symbol symbol);
   }
@@ -33,6 +43,18 @@ public class StockList extends VerticalLayout {
   private Service service = ServiceDirectory.getServiceInstance();
   private Set<SymbolSelectedListener> listeners = new HashSet<>();
 
+  // Subscriptions of the most recently fetched rows, by symbol id, the least recently fetched first
+  private Map<Integer, Subscription> liveRows = new LinkedHashMap<Integer, Subscription>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Subscription> eldest) {
+      if (size() > LIVE_ROWS) {
+        eldest.getValue().cancel();
+        return true;
+      }
+      return false;
+    }
+  };
+
 
   StockList() {
     setHeight("100%");
@@ -47,12 +69,13 @@ public class StockList extends VerticalLayout {
     TextField searchField = new TextField();
     searchField.addClassName("search-field");
     searchField.setPrefixComponent(VaadinIcon.SEARCH.create());
-    searchField.setPlaceholder("Search by ticker");
+    searchField.setPlaceholder("Search by ticker or name");
     searchField.setValueChangeMode(ValueChangeMode.LAZY);
 
     // Tell the grid to update based on the new filter
     searchField.addValueChangeListener(event -> {
-      this.filter = event.getValue().toLowerCase();
+      this.filter = event.getValue();
+      cancelLiveRows();
       grid.getDataProvider().refreshAll();
     });
 
@@ -62,14 +85,10 @@ public class StockList extends VerticalLayout {
   private void addGrid() {
     grid = new StockGrid();
 
-    // Define how we should fetch data as needed from our Speedment backend
+    // Define how we should fetch data as needed from our backend, which keeps the symbols in memory
     grid.setDataProvider(DataProvider.fromCallbacks(
-        dataQuery -> getSymbolStream()
-            .skip(dataQuery.getOffset())
-            .limit(dataQuery.getLimit())
-            .map(this::toStockItem),
-        countQuery ->
-            (int) getSymbolStream().count()
+        dataQuery -> toStockItems(service.findSymbols(filter, dataQuery.getOffset(), dataQuery.getLimit())),
+        countQuery -> service.countSymbols(filter)
     ));
 
     // React to selection events on the grid
@@ -80,31 +99,53 @@ public class StockList extends VerticalLayout {
     add(grid);
   }
 
-  private Stream<Symbol> getSymbolStream() {
-    if (filter.isEmpty()) {
-      return service.getSymbols();
-    } else {
-      return service
-          .getSymbols()
-          .filter(Symbol.TICKER.containsIgnoreCase(filter));
-    }
+  // Collect all relevant data of a page of symbols into StockItems, using a single backend call
+  private Stream<StockItem> toStockItems(List<Symbol> symbols) {
+    return service.getOverviews(symbols, 10).stream()
+        .map(this::toStockItem);
   }
 
-  // Collect all relevant symbol data into a StockItem
-  private StockItem toStockItem(Symbol symbol) {
+  private StockItem toStockItem(SymbolOverview overview) {
     StockItem stockItem = new StockItem();
-    stockItem.setSymbol(symbol);
+    stockItem.setSymbol(overview.getSymbol());
 
-    List<Double> history = service.getHistoryData(symbol, LocalDateTime.MIN, LocalDateTime.MAX, 10)
-        .map(p -> p.getClose() / 100.0)
-        .collect(Collectors.toList());
-    stockItem.setHistory(history);
+    // The history is shared by all sessions, so no copy is made
+    stockItem.setHistory(overview.getCloseHistory());
 
-    service.getMostRecentDataPoint(symbol).ifPresent(data -> stockItem.setCurrentValue(MoneyFormatter.format(data.getClose())));
+    overview.getQuote().ifPresent(quote -> stockItem.setCurrentValue(MoneyFormatter.format(quote.getLatest().getClose())));
 
+    subscribeToLiveUpdates(stockItem);
     return stockItem;
   }
 
+  // Keep the current value of the row updated as new data points arrive. The sparkline shows the
+  // whole history, so it is not affected by a few new points.
+  private void subscribeToLiveUpdates(StockItem stockItem) {
+    getUI().ifPresent(ui -> {
+      Subscription previous = liveRows.remove(stockItem.getSymbol().getId());
+      if (previous != null) {
+        previous.cancel();
+      }
+      liveRows.put(stockItem.getSymbol().getId(), LiveUpdates.of(ui).subscribe(service, stockItem.getSymbol(), dataPoints -> {
+        if (!dataPoints.isEmpty()) {
+          stockItem.setCurrentValue(MoneyFormatter.format(dataPoints.get(dataPoints.size() - 1).getClose()));
+          grid.getDataProvider().refreshItem(stockItem);
+        }
+      }));
+    });
+  }
+
+  private void cancelLiveRows() {
+    liveRows.values().forEach(Subscription::cancel);
+    liveRows.clear();
+  }
+
+  @Override
+  protected void onDetach(DetachEvent detachEvent) {
+    cancelLiveRows();
+    super.onDetach(detachEvent);
+  }
+
   void addSelectedListener(SymbolSelectedListener listener) {
     this.listeners.add(listener);
   }
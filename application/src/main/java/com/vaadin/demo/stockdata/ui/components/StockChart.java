@@ -1,13 +1,29 @@
 package com.vaadin.demo.stockdata.ui.components;
 
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.ui.data.ChartDataRanges;
 import com.vaadin.flow.component.charts.Chart;
 import com.vaadin.flow.component.charts.model.*;
+import com.vaadin.flow.component.dependency.JsModule;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.List;
 
 /**
  * Pre-configured chart for our needs
  */
+@JsModule("./src/packed-chart-data.js")
 public class StockChart extends Chart {
 
+  /**
+   * The number of 32 bit integers sent for each point: time stamp, open, high, low and close
+   */
+  private static final int INTS_PER_POINT = 5;
+
   public StockChart() {
 
     setTimeline(true);
@@ -46,4 +62,55 @@ public class StockChart extends Chart {
     navigator.setAdaptToUpdatedData(false);
     configuration.setNavigator(navigator);
   }
+
+  /**
+   * Pack data points into the format unpacked by packed-chart-data.js: the number of points
+   * followed by the time stamps, opens, highs, lows and closes as columns of little endian 32 bit
+   * integers, encoded in base64. This is a fraction of the size of a JSON object per point, and
+   * does not need any intermediate objects. Can be called without holding the session lock.
+   *
+   * @param dataPoints the points to pack, in ascending time stamp order
+   * @return the packed points
+   */
+  public static String pack(List<DataPoint> dataPoints) {
+    int count = dataPoints.size();
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * (1 + INTS_PER_POINT * count))
+        .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(count);
+    // The values are unsigned 32 bit integers in the database
+    dataPoints.forEach(dataPoint -> buffer.putInt((int) dataPoint.getTimeStamp()));
+    dataPoints.forEach(dataPoint -> buffer.putInt((int) dataPoint.getOpen()));
+    dataPoints.forEach(dataPoint -> buffer.putInt((int) dataPoint.getHigh()));
+    dataPoints.forEach(dataPoint -> buffer.putInt((int) dataPoint.getLow()));
+    dataPoints.forEach(dataPoint -> buffer.putInt((int) dataPoint.getClose()));
+    return Base64.getEncoder().encodeToString(buffer.array());
+  }
+
+  /**
+   * Replace the points of a series in the client within the given ranges only, keeping the points
+   * it holds outside of them
+   *
+   * @param seriesIndex the index of the series in the configuration
+   * @param packedData the points within the given ranges, as packed by {@link #pack(List)}
+   * @param replacedRanges the ranges to replace the points of
+   */
+  public void mergeSeriesData(int seriesIndex, String packedData, List<ChartDataRanges.Range> replacedRanges) {
+    JsonArray ranges = Json.createArray();
+    for (ChartDataRanges.Range range : replacedRanges) {
+      ranges.set(ranges.length(), range.getStart() * 1000.0);
+      ranges.set(ranges.length(), range.getEnd() * 1000.0);
+    }
+    getElement().executeJs("window.StockChartData.mergeSeriesData(this, $0, $1, $2)", seriesIndex, packedData, ranges);
+  }
+
+  /**
+   * Replace all points of a series in the client, for when it holds too many points to keep the
+   * ones outside of the view
+   *
+   * @param seriesIndex the index of the series in the configuration
+   * @param packedData the points the series is to hold, as packed by {@link #pack(List)}
+   */
+  public void replaceSeriesData(int seriesIndex, String packedData) {
+    getElement().executeJs("window.StockChartData.replaceSeriesData(this, $0, $1)", seriesIndex, packedData);
+  }
 }
@@ -0,0 +1,141 @@
+package com.vaadin.demo.stockdata.ui.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The time ranges of a series that a client chart already holds points for, and the distance
+ * between those points. Used for only sending the points missing for a new view of the chart,
+ * instead of all points of the view.
+ */
+public class ChartDataRanges {
+
+  /**
+   * A time range, with both ends inclusive, the approximate distance between its points and the
+   * number of points held within it
+   */
+  public static class Range {
+    private final long start;
+    private final long end;
+    private final long step;
+    private final long pointCount;
+
+    public Range(long start, long end, long step) {
+      this(start, end, step, 0);
+    }
+
+    public Range(long start, long end, long step, long pointCount) {
+      this.start = start;
+      this.end = end;
+      this.step = step;
+      this.pointCount = pointCount;
+    }
+
+    public long getStart() {
+      return start;
+    }
+
+    public long getEnd() {
+      return end;
+    }
+
+    public long getStep() {
+      return step;
+    }
+
+    public long getPointCount() {
+      return pointCount;
+    }
+
+    public long getLength() {
+      return end - start + 1;
+    }
+
+    // The part of this range between the given time stamps, assuming its points are evenly spread
+    private Range part(long partStart, long partEnd) {
+      double share = ((double) partEnd - partStart + 1) / getLength();
+      return new Range(partStart, partEnd, step, (long) Math.ceil(pointCount * share));
+    }
+  }
+
+  // Disjoint ranges in ascending order
+  private final List<Range> ranges = new ArrayList<>();
+
+  /**
+   * @param start start time stamp of the view (inclusive)
+   * @param end end time stamp of the view (inclusive)
+   * @param step the wanted distance between points
+   * @return the parts of the view for which the chart holds no points, or only points farther
+   *         apart than the wanted distance, in ascending order
+   */
+  public List<Range> missing(long start, long end, long step) {
+    List<Range> missing = new ArrayList<>();
+    long cursor = start;
+    for (Range range : ranges) {
+      if (range.end < cursor || range.step > step) {
+        continue;
+      }
+      if (range.start > end) {
+        break;
+      }
+      if (range.start > cursor) {
+        missing.add(new Range(cursor, range.start - 1, step));
+      }
+      cursor = Math.max(cursor, range.end + 1);
+    }
+    if (cursor <= end) {
+      missing.add(new Range(cursor, end, step));
+    }
+    return missing;
+  }
+
+  /**
+   * Record that the chart now holds the points of a range, replacing the points it held within it
+   *
+   * @param added the range the points have been sent for
+   */
+  public void add(Range added) {
+    List<Range> updated = new ArrayList<>(ranges.size() + 2);
+    boolean inserted = false;
+    for (Range range : ranges) {
+      if (range.end < added.start || range.start > added.end) {
+        if (!inserted && range.start > added.end) {
+          updated.add(added);
+          inserted = true;
+        }
+        updated.add(range);
+        continue;
+      }
+      // Keep the parts of an overlapped range outside of the added one
+      if (range.start < added.start) {
+        updated.add(range.part(range.start, added.start - 1));
+      }
+      if (!inserted) {
+        updated.add(added);
+        inserted = true;
+      }
+      if (range.end > added.end) {
+        updated.add(range.part(added.end + 1, range.end));
+      }
+    }
+    if (!inserted) {
+      updated.add(added);
+    }
+    ranges.clear();
+    ranges.addAll(updated);
+  }
+
+  /**
+   * @return the approximate number of points the chart holds
+   */
+  public long getPointCount() {
+    return ranges.stream().mapToLong(Range::getPointCount).sum();
+  }
+
+  /**
+   * Record that the chart no longer holds any points
+   */
+  public void clear() {
+    ranges.clear();
+  }
+}
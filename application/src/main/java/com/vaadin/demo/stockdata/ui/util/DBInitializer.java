@@ -10,10 +10,11 @@ public class DBInitializer implements ServletContextListener {
   @Override
   public void contextInitialized(ServletContextEvent sce) {
     ServiceDirectory.getServiceInstance();
+    ServiceDirectory.startWarmUp();
   }
 
   @Override
   public void contextDestroyed(ServletContextEvent sce) {
-
+    ServiceDirectory.closeServiceInstance();
   }
 }
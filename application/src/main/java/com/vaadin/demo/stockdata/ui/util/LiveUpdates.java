@@ -0,0 +1,87 @@
+package com.vaadin.demo.stockdata.ui.util;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.Subscription;
+import com.vaadin.flow.component.ComponentUtil;
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.component.UIDetachedException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pushes new data points to the components of one UI. The points received for each subscription
+ * are collected and applied together at most once per push interval, in a single UI access, so a
+ * busy symbol cannot flood a slow client.
+ */
+public class LiveUpdates {
+
+  private static final long PUSH_INTERVAL_MILLIS = 1000;
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "live-updates");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final UI ui;
+  private final Map<Consumer<List<DataPoint>>, List<DataPoint>> pending = new LinkedHashMap<>();
+  private boolean flushScheduled;
+
+  private LiveUpdates(UI ui) {
+    this.ui = ui;
+  }
+
+  /**
+   * @param ui the UI to push to, must be locked by the current thread
+   * @return the live updates of the given UI
+   */
+  public static LiveUpdates of(UI ui) {
+    LiveUpdates liveUpdates = ComponentUtil.getData(ui, LiveUpdates.class);
+    if (liveUpdates == null) {
+      liveUpdates = new LiveUpdates(ui);
+      ComponentUtil.setData(ui, LiveUpdates.class, liveUpdates);
+    }
+    return liveUpdates;
+  }
+
+  /**
+   * @param service the service to subscribe to
+   * @param symbol the symbol to get new data points of
+   * @param listener applies the new data points while holding the session lock
+   * @return the subscription, to be cancelled when the listening component is no longer shown
+   */
+  public Subscription subscribe(Service service, Symbol symbol, Consumer<List<DataPoint>> listener) {
+    return service.subscribe(symbol, points -> enqueue(listener, points));
+  }
+
+  private synchronized void enqueue(Consumer<List<DataPoint>> listener, List<DataPoint> points) {
+    pending.computeIfAbsent(listener, l -> new ArrayList<>()).addAll(points);
+    if (!flushScheduled) {
+      flushScheduled = true;
+      TIMER.schedule(this::flush, PUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void flush() {
+    Map<Consumer<List<DataPoint>>, List<DataPoint>> updates;
+    synchronized (this) {
+      updates = new LinkedHashMap<>(pending);
+      pending.clear();
+      flushScheduled = false;
+    }
+    try {
+      ui.access(() -> updates.forEach((listener, points) -> listener.accept(points)));
+    } catch (UIDetachedException e) {
+      // Nobody to push to anymore, the subscriptions are cancelled as the components detach
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.vaadin.demo.stockdata.ui.util;
+
+import com.vaadin.demo.stockdata.backend.service.CacheStatistics;
+import com.vaadin.demo.stockdata.backend.service.HistogramSummary;
+import com.vaadin.demo.stockdata.backend.service.ServiceMetricsMXBean;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The metrics of the service in the Prometheus text format, one value per line. The same values are
+ * available over JMX.
+ */
+@WebServlet(urlPatterns = "/metrics")
+public class MetricsServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    ServiceMetricsMXBean metrics = ServiceDirectory.getServiceInstance().getMetrics();
+    resp.setContentType("text/plain; version=0.0.4");
+    PrintWriter out = resp.getWriter();
+
+    Map<String, HistogramSummary> operations = new LinkedHashMap<>();
+    metrics.getOperationLatencies().forEach((operation, summary) ->
+        operations.put("operation=\"" + operation + "\"", summary));
+    printSummaries(out, "stocks_operation_latency_microseconds", operations);
+    printSummaries(out, "stocks_shard_load_latency_microseconds",
+        byKind(metrics.getShardLoadLatency(), metrics.getShardReloadLatency()));
+    printSummaries(out, "stocks_shard_load_rows", byKind(metrics.getShardLoadRows(), metrics.getShardReloadRows()));
+
+    printGauge(out, "stocks_loaded_shards", metrics.getLoadedShards());
+    printGauge(out, "stocks_loaded_shard_memory_bytes", metrics.getShardMemoryBytes());
+    printGauge(out, "stocks_memory_budget_bytes", metrics.getMemoryBudgetBytes());
+    out.println("# TYPE stocks_shard_memory_bytes gauge");
+    metrics.getShardMemoryBytesBySymbolId().forEach((symbolId, bytes) ->
+        out.println("stocks_shard_memory_bytes{symbol_id=\"" + symbolId + "\"} " + bytes));
+    out.println("# TYPE stocks_executor_queue_depth gauge");
+    metrics.getExecutorQueueDepths().forEach((executor, depth) ->
+        out.println("stocks_executor_queue_depth{executor=\"" + executor + "\"} " + depth));
+
+    Map<String, CacheStatistics> caches = metrics.getCacheStatistics();
+    out.println("# TYPE stocks_cache_hits_total counter");
+    caches.forEach((cache, statistics) ->
+        out.println("stocks_cache_hits_total{cache=\"" + cache + "\"} " + statistics.getHits()));
+    out.println("# TYPE stocks_cache_misses_total counter");
+    caches.forEach((cache, statistics) ->
+        out.println("stocks_cache_misses_total{cache=\"" + cache + "\"} " + statistics.getMisses()));
+    out.println("# TYPE stocks_cache_hit_ratio gauge");
+    caches.forEach((cache, statistics) ->
+        out.println("stocks_cache_hit_ratio{cache=\"" + cache + "\"} " + statistics.getHitRatio()));
+  }
+
+  private static Map<String, HistogramSummary> byKind(HistogramSummary load, HistogramSummary reload) {
+    Map<String, HistogramSummary> summaries = new LinkedHashMap<>();
+    summaries.put("kind=\"load\"", load);
+    summaries.put("kind=\"reload\"", reload);
+    return summaries;
+  }
+
+  private static void printGauge(PrintWriter out, String name, long value) {
+    out.println("# TYPE " + name + " gauge");
+    out.println(name + " " + value);
+  }
+
+  // The samples of a metric have to follow its type line, so the maximums are a gauge of their own
+  private static void printSummaries(PrintWriter out, String name, Map<String, HistogramSummary> summaries) {
+    out.println("# TYPE " + name + " summary");
+    summaries.forEach((labels, summary) -> {
+      out.println(name + "{" + labels + ",quantile=\"0.5\"} " + summary.getP50());
+      out.println(name + "{" + labels + ",quantile=\"0.9\"} " + summary.getP90());
+      out.println(name + "{" + labels + ",quantile=\"0.99\"} " + summary.getP99());
+      out.println(name + "{" + labels + ",quantile=\"0.999\"} " + summary.getP999());
+      out.println(name + "_count{" + labels + "} " + summary.getCount());
+      out.println(name + "_sum{" + labels + "} " + Math.round(summary.getMean() * summary.getCount()));
+    });
+    out.println("# TYPE " + name + "_max gauge");
+    summaries.forEach((labels, summary) -> out.println(name + "_max{" + labels + "} " + summary.getMax()));
+  }
+}
@@ -0,0 +1,25 @@
+package com.vaadin.demo.stockdata.ui.util;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Readiness probe for load balancers. Responds with 200 once the data warm up is done, and with
+ * 503 while it is still in progress or if it has failed, such as by running out of memory. The
+ * body describes the progress and any failure.
+ */
+@WebServlet(urlPatterns = "/ready")
+public class ReadinessServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    resp.setContentType("text/plain");
+    resp.setStatus(ServiceDirectory.isReady()
+        ? HttpServletResponse.SC_OK
+        : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    resp.getWriter().println(ServiceDirectory.getWarmUpStatus());
+  }
+}
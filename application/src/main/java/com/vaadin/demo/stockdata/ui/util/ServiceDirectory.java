@@ -1,6 +1,11 @@
 package com.vaadin.demo.stockdata.ui.util;
 
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
 import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.WarmUp;
+
+import java.nio.file.Paths;
+import java.time.Duration;
 
 /**
  * Just use one instance of the service class so we don't run out of memory.
@@ -8,19 +13,82 @@ import com.vaadin.demo.stockdata.backend.service.Service;
 public class ServiceDirectory {
     private static final String MYSQL_HOST_NAME_VARIABLE_NAME = "STOCKS_MYSQL_HOST";
     private static final String DEFAULT_MYSQL_HOST_NAME = "localhost";
+    private static final String COLUMN_STORAGE_VARIABLE_NAME = "STOCKS_COLUMN_STORAGE";
+    private static final String INCREMENTAL_REFRESH_SECONDS_VARIABLE_NAME = "STOCKS_INCREMENTAL_REFRESH_SECONDS";
+    private static final String MEMORY_BUDGET_MB_VARIABLE_NAME = "STOCKS_MEMORY_BUDGET_MB";
+    private static final String SNAPSHOT_DIRECTORY_VARIABLE_NAME = "STOCKS_SNAPSHOT_DIR";
+    private static final String SNAPSHOT_INTERVAL_MINUTES_VARIABLE_NAME = "STOCKS_SNAPSHOT_INTERVAL_MINUTES";
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_MINUTES = 10;
+    private static final String READ_ONLY_VARIABLE_NAME = "STOCKS_READ_ONLY";
+    private static final String WARM_UP_SYMBOLS_VARIABLE_NAME = "STOCKS_WARM_UP_SYMBOLS";
+    private static final String WARM_UP_ALL_SYMBOLS = "ALL";
+    private static final int WARM_UP_PARALLELISM = Runtime.getRuntime().availableProcessors();
 
     private static Service service = null;
+    private static WarmUp warmUp = null;
 
     public static synchronized Service getServiceInstance(){
         if (service == null) {
+            String snapshotDirectory = System.getenv(SNAPSHOT_DIRECTORY_VARIABLE_NAME);
+            if (snapshotDirectory != null && Boolean.parseBoolean(System.getenv(READ_ONLY_VARIABLE_NAME))) {
+                System.out.println("Serving the snapshots in " + snapshotDirectory + " without a database");
+                service = Service.openSnapshots(Paths.get(snapshotDirectory));
+                return service;
+            }
             String hostName = System.getenv(MYSQL_HOST_NAME_VARIABLE_NAME);
             System.out.println("Speedment using DB at hostName " + hostName);
             if (hostName == null) {
                 hostName = DEFAULT_MYSQL_HOST_NAME;
             }
-            service = Service.create(hostName, "root", "root").withAcceleration(true);
+            String columnStorage = System.getenv(COLUMN_STORAGE_VARIABLE_NAME);
+            String refreshSeconds = System.getenv(INCREMENTAL_REFRESH_SECONDS_VARIABLE_NAME);
+            String memoryBudgetMb = System.getenv(MEMORY_BUDGET_MB_VARIABLE_NAME);
+            String snapshotMinutes = System.getenv(SNAPSHOT_INTERVAL_MINUTES_VARIABLE_NAME);
+            service = Service.create(hostName, "root", "root")
+                .withAcceleration(true)
+                .withMemoryBudget(memoryBudgetMb == null ? Long.MAX_VALUE : Long.parseLong(memoryBudgetMb) << 20)
+                .withIncrementalRefresh(refreshSeconds == null ? null : Duration.ofSeconds(Long.parseLong(refreshSeconds)))
+                .withSnapshots(snapshotDirectory == null ? null : Paths.get(snapshotDirectory),
+                    Duration.ofMinutes(snapshotMinutes == null ? DEFAULT_SNAPSHOT_INTERVAL_MINUTES : Long.parseLong(snapshotMinutes)))
+                .withColumnarStore(columnStorage == null ? ColumnStorage.NONE : ColumnStorage.valueOf(columnStorage));
         }
 
         return service;
     }
+
+    /**
+     * Start loading symbols into memory if requested by the STOCKS_WARM_UP_SYMBOLS environment
+     * variable, which is either a number of symbols or ALL.
+     */
+    public static synchronized void startWarmUp() {
+        String symbols = System.getenv(WARM_UP_SYMBOLS_VARIABLE_NAME);
+        if (symbols != null && warmUp == null) {
+            long maxSymbols = WARM_UP_ALL_SYMBOLS.equalsIgnoreCase(symbols) ? Long.MAX_VALUE : Long.parseLong(symbols);
+            warmUp = getServiceInstance().warmUp(maxSymbols, WARM_UP_PARALLELISM);
+        }
+    }
+
+    /**
+     * @return true if no warm up has been started or the started warm up is done without failing
+     */
+    public static synchronized boolean isReady() {
+        return warmUp == null || warmUp.isCompletedNormally();
+    }
+
+    /**
+     * @return a description of the warm up progress
+     */
+    public static synchronized String getWarmUpStatus() {
+        return warmUp == null ? "no warm up" : warmUp.toString();
+    }
+
+    /**
+     * Close the service instance, if created, stopping all its background work
+     */
+    public static synchronized void closeServiceInstance() {
+        if (service != null) {
+            service.close();
+            service = null;
+        }
+    }
 }
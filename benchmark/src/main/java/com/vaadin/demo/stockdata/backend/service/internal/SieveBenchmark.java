@@ -0,0 +1,83 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.speedment.enterprise.datastore.runtime.collector.SieveCollector;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+import com.vaadin.demo.stockdata.benchmark.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Downsampling the whole history of a symbol to the points of a chart: with the SieveCollector, as
+ * done for the Speedment in memory acceleration and direct SQL, and by the columnar series and its
+ * rollup pyramid.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SieveBenchmark {
+
+    private static final int SYMBOL_ID = 1;
+
+    @Param({"DAY", "HOUR", "MINUTE", "SECOND"})
+    public SyntheticData.Granularity granularity;
+
+    @Param({"10000", "1000000"})
+    public int points;
+
+    @Param({"300"})
+    public int numberOfPoints;
+
+    private List<DataPoint> sorted;
+    private ColumnarSeries series;
+    private RollupPyramid pyramid;
+    private long start;
+    private long end;
+    private int granularityStep;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sorted = SyntheticData.points(SYMBOL_ID, granularity, points);
+        series = ColumnarSeries.of(SYMBOL_ID, sorted.stream(), ColumnStorage.HEAP);
+        pyramid = RollupPyramid.of(series);
+        start = SyntheticData.START_TIME_STAMP;
+        end = SyntheticData.endTimeStamp(granularity, points);
+        // The same step as used by the service
+        granularityStep = (int) Math.min(TimeUnit.DAYS.toSeconds(1), Math.max(1, (end - start) / (numberOfPoints - 1)));
+    }
+
+    @Benchmark
+    public List<DataPoint> sieveCollector() {
+        return sorted.stream()
+            .collect(SieveCollector.of(DataPoint.TIME_STAMP, numberOfPoints, granularityStep))
+            .get()
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<DataPoint> columnarSeries() {
+        return series.sieve(start, end, numberOfPoints).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<DataPoint> rollupPyramid() {
+        return pyramid.sieve(start, end, numberOfPoints).collect(Collectors.toList());
+    }
+}
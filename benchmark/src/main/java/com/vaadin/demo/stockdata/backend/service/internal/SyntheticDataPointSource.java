@@ -0,0 +1,62 @@
+package com.vaadin.demo.stockdata.backend.service.internal;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.benchmark.SyntheticData;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Supplies the synthetic data points of each symbol in place of the database. The points of a
+ * symbol are generated once and kept, so loading them costs about as much as reading them from an
+ * in memory table.
+ */
+public final class SyntheticDataPointSource implements DataPointSource {
+
+    private final SyntheticData.Granularity granularity;
+    private final int pointsPerSymbol;
+    private final Map<Integer, List<DataPoint>> points;
+
+    public SyntheticDataPointSource(SyntheticData.Granularity granularity, int pointsPerSymbol) {
+        this.granularity = granularity;
+        this.pointsPerSymbol = pointsPerSymbol;
+        this.points = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a service serving synthetic data from the columnar store, without any database
+     *
+     * @param symbols all symbols of the service
+     * @param granularity the distance between the points of each symbol
+     * @param pointsPerSymbol the number of points of each symbol
+     * @param storage where to keep the columns
+     * @return the service
+     */
+    public static Service createService(List<Symbol> symbols, SyntheticData.Granularity granularity,
+                                        int pointsPerSymbol, ColumnStorage storage) {
+        return new ServiceImpl(new SyntheticDataPointSource(granularity, pointsPerSymbol), symbols, storage);
+    }
+
+    /**
+     * @param symbolId the id of the symbol
+     * @return all points of the symbol, in ascending time stamp order
+     */
+    public List<DataPoint> points(int symbolId) {
+        return points.computeIfAbsent(symbolId, id -> SyntheticData.points(id, granularity, pointsPerSymbol));
+    }
+
+    @Override
+    public Stream<DataPoint> load(Symbol symbol) {
+        return points(symbol.getId()).stream();
+    }
+
+    @Override
+    public Stream<DataPoint> loadAfter(Symbol symbol, long timeStamp) {
+        return load(symbol).filter(point -> point.getTimeStamp() > timeStamp);
+    }
+}
@@ -0,0 +1,171 @@
+package com.vaadin.demo.stockdata.benchmark;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.internal.SyntheticDataPointSource;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Replays the traffic of concurrent users of the application against a service, with an increasing
+ * number of sessions, and reports the latency and throughput of each operation at each step. The
+ * first step at which the throughput stops growing along with the number of sessions, or at which
+ * the 99th percentile latency of an operation exceeds its target, is reported as the saturation
+ * point.
+ *
+ * Without a database host, the service serves synthetic data from the columnar store. With one, it
+ * connects to that database like the application does, for example to the MySQL container started
+ * by {@code docker-compose up db}.
+ *
+ * Options, given as {@code --name=value}:
+ * <ul>
+ *     <li>sessions: comma separated number of sessions of each step, default 10,25,50,100,200,400</li>
+ *     <li>duration: seconds to run each step, default 30</li>
+ *     <li>warmup: seconds to run each step before measuring, default 5</li>
+ *     <li>think: mean milliseconds between the actions of a session, default 1000</li>
+ *     <li>p99-target: 99th percentile latency in milliseconds above which a step is saturated, default 500</li>
+ *     <li>host: database host, default none</li>
+ *     <li>storage: columnar store storage, default HEAP, or NONE for Speedment acceleration when using a database</li>
+ *     <li>symbols, points, granularity: size of the synthetic data, default 1000, 10000 and MINUTE</li>
+ * </ul>
+ */
+public final class LoadGenerator {
+
+    /**
+     * The share of the growth in sessions that the throughput must grow by for a step not to be
+     * saturated
+     */
+    private static final double MIN_SCALING = 0.5;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final Map<String, String> options = parseOptions(args);
+        final int[] steps = Arrays.stream(options.getOrDefault("sessions", "10,25,50,100,200,400").split(","))
+            .mapToInt(Integer::parseInt)
+            .toArray();
+        final long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        final long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "5"));
+        final long thinkMillis = Long.parseLong(options.getOrDefault("think", "1000"));
+        final long p99TargetNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(options.getOrDefault("p99-target", "500")));
+
+        try (Service service = createService(options)) {
+            final List<Symbol> symbols = service.getSymbols().collect(Collectors.toList());
+            // Sessions pick symbols at random from the list and from the pages of it
+            if (symbols.isEmpty()) {
+                throw new IllegalStateException("There are no symbols to simulate sessions with, create the database first");
+            }
+            System.out.println("Loading " + symbols.size() + " symbols...");
+            service.warmUp(symbols.size(), Runtime.getRuntime().availableProcessors()).getFuture().join();
+
+            double previousThroughput = 0;
+            int previousSessions = 0;
+            Integer saturatedAt = null;
+            for (int sessions : steps) {
+                final Map<SimulatedSession.Operation, Histogram> histograms =
+                    runStep(service, symbols, sessions, warmupSeconds, durationSeconds, thinkMillis);
+                final double throughput = report(sessions, histograms, durationSeconds);
+
+                final boolean scaling = previousSessions == 0
+                    || throughput - previousThroughput
+                    >= MIN_SCALING * previousThroughput * (sessions - previousSessions) / previousSessions;
+                final boolean withinTarget = histograms.values().stream()
+                    .allMatch(histogram -> histogram.getTotalCount() == 0 || histogram.getValueAtPercentile(99) <= p99TargetNanos);
+                if (saturatedAt == null && (!scaling || !withinTarget)) {
+                    saturatedAt = sessions;
+                }
+                previousThroughput = throughput;
+                previousSessions = sessions;
+            }
+            System.out.println(saturatedAt == null
+                ? "Not saturated at up to " + previousSessions + " sessions"
+                : "Saturated at " + saturatedAt + " sessions");
+        }
+    }
+
+    private static Service createService(Map<String, String> options) {
+        final ColumnStorage storage = ColumnStorage.valueOf(options.getOrDefault("storage", "HEAP"));
+        final String host = options.get("host");
+        if (host != null) {
+            return Service.create(host, "root", "root").withColumnarStore(storage);
+        }
+        final List<Symbol> symbols = SyntheticData.symbols(Integer.parseInt(options.getOrDefault("symbols", "1000")));
+        return SyntheticDataPointSource.createService(symbols,
+            SyntheticData.Granularity.valueOf(options.getOrDefault("granularity", "MINUTE")),
+            Integer.parseInt(options.getOrDefault("points", "10000")),
+            storage);
+    }
+
+    private static Map<SimulatedSession.Operation, Histogram> runStep(Service service, List<Symbol> symbols, int sessions,
+                                                                      long warmupSeconds, long durationSeconds,
+                                                                      long thinkMillis) throws InterruptedException {
+        final Map<SimulatedSession.Operation, Recorder> recorders = new EnumMap<>(SimulatedSession.Operation.class);
+        for (SimulatedSession.Operation operation : SimulatedSession.Operation.values()) {
+            recorders.put(operation, new Recorder(3));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(sessions);
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds + durationSeconds);
+        for (int session = 0; session < sessions; session++) {
+            executor.execute(new SimulatedSession(service, symbols, recorders, thinkMillis,
+                () -> System.nanoTime() < end, sessions * 1_000_003L + session));
+        }
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        // Discard what has been recorded while warming up
+        recorders.values().forEach(Recorder::getIntervalHistogram);
+        TimeUnit.SECONDS.sleep(durationSeconds);
+
+        final Map<SimulatedSession.Operation, Histogram> histograms = new EnumMap<>(SimulatedSession.Operation.class);
+        recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        return histograms;
+    }
+
+    /**
+     * @return the total number of operations per second
+     */
+    private static double report(int sessions, Map<SimulatedSession.Operation, Histogram> histograms, long durationSeconds) {
+        System.out.println();
+        System.out.println(sessions + " sessions");
+        System.out.println(String.format("%-8s %10s %10s %10s %10s %10s", "", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        double total = 0;
+        for (Map.Entry<SimulatedSession.Operation, Histogram> entry : histograms.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            final double throughput = (double) histogram.getTotalCount() / durationSeconds;
+            total += throughput;
+            System.out.println(String.format("%-8s %10.1f %10.2f %10.2f %10.2f %10.2f", entry.getKey(), throughput,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue())));
+        }
+        System.out.println(String.format("%-8s %10.1f", "TOTAL", total));
+        return total;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.out.println("Options are given as --name=value, but got '" + arg + "'");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,160 @@
+package com.vaadin.demo.stockdata.benchmark;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.ColumnStorage;
+import com.vaadin.demo.stockdata.backend.service.Quote;
+import com.vaadin.demo.stockdata.backend.service.Service;
+import com.vaadin.demo.stockdata.backend.service.SymbolOverview;
+import com.vaadin.demo.stockdata.backend.service.internal.SyntheticDataPointSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of the {@link Service} operations used by the UI, against synthetic data served from
+ * the columnar store. Run with different thread counts using the JMH option {@code -t}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    private static final int SYMBOLS = 100;
+
+    /**
+     * The number of points of a chart, as shown by the details view
+     */
+    private static final int CHART_POINTS = 300;
+
+    /**
+     * The number of rows of a grid page and points of a sparkline, as shown by the stock list
+     */
+    private static final int PAGE_SIZE = 20;
+    private static final int SPARKLINE_POINTS = 10;
+
+    @Param({"DAY", "HOUR", "MINUTE", "SECOND"})
+    public SyntheticData.Granularity granularity;
+
+    @Param({"1000", "100000"})
+    public int pointsPerSymbol;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public ColumnStorage storage;
+
+    private Service service;
+    private List<Symbol> symbols;
+    private LocalDateTime first;
+    private LocalDateTime last;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        symbols = SyntheticData.symbols(SYMBOLS);
+        service = SyntheticDataPointSource.createService(symbols, granularity, pointsPerSymbol, storage);
+        service.warmUp(SYMBOLS, Runtime.getRuntime().availableProcessors()).getFuture().join();
+        first = LocalDateTime.ofEpochSecond(SyntheticData.START_TIME_STAMP, 0, ZoneOffset.UTC);
+        last = LocalDateTime.ofEpochSecond(SyntheticData.endTimeStamp(granularity, pointsPerSymbol), 0, ZoneOffset.UTC);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    /**
+     * The random choices of each benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Choices {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        Symbol symbol(ServiceBenchmark benchmark) {
+            return benchmark.symbols.get(random.nextInt(benchmark.symbols.size()));
+        }
+
+        List<Symbol> page(ServiceBenchmark benchmark) {
+            final int offset = random.nextInt(benchmark.symbols.size() - PAGE_SIZE + 1);
+            return benchmark.symbols.subList(offset, offset + PAGE_SIZE);
+        }
+
+        // A window of one to a hundred percent of the history, at a random position
+        LocalDateTime[] window(ServiceBenchmark benchmark) {
+            final long start = benchmark.first.toEpochSecond(ZoneOffset.UTC);
+            final long range = benchmark.last.toEpochSecond(ZoneOffset.UTC) - start;
+            final long length = Math.max(1, range * (1 + random.nextInt(100)) / 100);
+            final long offset = random.nextLong(range - length + 1);
+            return new LocalDateTime[] {
+                LocalDateTime.ofEpochSecond(start + offset, 0, ZoneOffset.UTC),
+                LocalDateTime.ofEpochSecond(start + offset + length, 0, ZoneOffset.UTC)
+            };
+        }
+    }
+
+    /**
+     * The initial chart of a symbol, mostly answered from the shared history cache
+     */
+    @Benchmark
+    public List<DataPoint> historyFullRange(Choices choices) {
+        return service.getHistoryData(choices.symbol(this), LocalDateTime.MIN, LocalDateTime.MAX, CHART_POINTS)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Zooming a chart to a random range, mostly computed
+     */
+    @Benchmark
+    public List<DataPoint> historyRandomWindow(Choices choices) {
+        final LocalDateTime[] window = choices.window(this);
+        return service.getHistoryData(choices.symbol(this), window[0], window[1], CHART_POINTS)
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Optional<DataPoint> mostRecentDataPoint(Choices choices) {
+        return service.getMostRecentDataPoint(choices.symbol(this));
+    }
+
+    @Benchmark
+    public Optional<Quote> quote(Choices choices) {
+        return service.getQuote(choices.symbol(this));
+    }
+
+    @Benchmark
+    public long symbols() {
+        return service.getSymbols().count();
+    }
+
+    @Benchmark
+    public List<Symbol> findSymbolsPage() {
+        return service.findSymbols("A", 0, PAGE_SIZE);
+    }
+
+    /**
+     * A page of the stock list, as fetched by its data provider
+     */
+    @Benchmark
+    public List<SymbolOverview> overviewsPage(Choices choices) {
+        return service.getOverviews(choices.page(this), SPARKLINE_POINTS);
+    }
+}
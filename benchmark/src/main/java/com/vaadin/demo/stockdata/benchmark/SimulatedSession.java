@@ -0,0 +1,191 @@
+package com.vaadin.demo.stockdata.benchmark;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.service.Service;
+import org.HdrHistogram.Recorder;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * One simulated user of the application, issuing the same service calls as the stock list and the
+ * stock details views do, with think time in between.
+ */
+final class SimulatedSession implements Runnable {
+
+    enum Operation {
+        /**
+         * Fetching a page of the stock list: the symbols and their overviews
+         */
+        PAGE,
+        /**
+         * Typing a character into the search field: counting the matches and fetching the first page
+         */
+        SEARCH,
+        /**
+         * Selecting a symbol: its most recent point and the points of the whole chart
+         */
+        SELECT,
+        /**
+         * Zooming or panning the chart after the debounce delay
+         */
+        ZOOM
+    }
+
+    private static final int PAGE_SIZE = 20;
+    private static final int SPARKLINE_POINTS = 10;
+    private static final int CHART_POINTS = 300;
+
+    /**
+     * The delay of the lazy search field and of the zoom debouncing
+     */
+    private static final long DEBOUNCE_MILLIS = 500;
+
+    private final Service service;
+    private final List<Symbol> symbols;
+    private final Map<Operation, Recorder> recorders;
+    private final long meanThinkMillis;
+    private final BooleanSupplier running;
+    private final SplittableRandom random;
+
+    private boolean started;
+    private String filter = "";
+    private int offset;
+    private List<Symbol> page = List.of();
+    private Symbol selected;
+    private long viewStart;
+    private long viewEnd;
+
+    SimulatedSession(Service service, List<Symbol> symbols, Map<Operation, Recorder> recorders,
+                     long meanThinkMillis, BooleanSupplier running, long seed) {
+        this.service = service;
+        this.symbols = symbols;
+        this.recorders = recorders;
+        this.meanThinkMillis = meanThinkMillis;
+        this.running = running;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running.getAsBoolean()) {
+                try {
+                    act();
+                } catch (RuntimeException e) {
+                    // Carry on, a session ending early would lower the load for the rest of the step
+                    System.out.println("Simulated session operation failed");
+                    e.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void act() throws InterruptedException {
+        if (!started) {
+            started = true;
+            fetchPage(Operation.PAGE);
+            return;
+        }
+        think(meanThinkMillis);
+        final int action = random.nextInt(100);
+        if (action < 40) {
+            scroll();
+        } else if (action < 55) {
+            search();
+        } else if (action < 70 || selected == null) {
+            select();
+        } else {
+            zoom();
+        }
+    }
+
+    private void scroll() {
+        final int count = service.countSymbols(filter);
+        offset = offset + PAGE_SIZE < count ? offset + PAGE_SIZE : 0;
+        fetchPage(Operation.PAGE);
+    }
+
+    private void search() throws InterruptedException {
+        final String ticker = symbols.get(random.nextInt(symbols.size())).getTicker();
+        final int length = 1 + random.nextInt(ticker.length());
+        for (int typed = 1; typed <= length && running.getAsBoolean(); typed++) {
+            filter = ticker.substring(0, typed);
+            offset = 0;
+            fetchPage(Operation.SEARCH);
+            think(DEBOUNCE_MILLIS);
+        }
+    }
+
+    private void fetchPage(Operation operation) {
+        final long start = System.nanoTime();
+        if (operation == Operation.SEARCH) {
+            service.countSymbols(filter);
+        }
+        page = service.findSymbols(filter, offset, PAGE_SIZE);
+        service.getOverviews(page, SPARKLINE_POINTS);
+        record(operation, start);
+    }
+
+    private void select() {
+        if (page.isEmpty()) {
+            filter = "";
+            offset = 0;
+            fetchPage(Operation.PAGE);
+        }
+        selected = page.get(random.nextInt(page.size()));
+        final long start = System.nanoTime();
+        service.getMostRecentDataPoint(selected);
+        final List<DataPoint> history =
+            service.getHistoryDataAsync(selected, LocalDateTime.MIN, LocalDateTime.MAX, CHART_POINTS).join();
+        record(Operation.SELECT, start);
+        if (history.isEmpty()) {
+            // Such as an unknown ticker, there is no chart to zoom, so another symbol is selected next
+            selected = null;
+            return;
+        }
+        viewStart = history.stream().mapToLong(DataPoint::getTimeStamp).min().getAsLong();
+        viewEnd = history.stream().mapToLong(DataPoint::getTimeStamp).max().getAsLong();
+    }
+
+    // A few zoom or pan events in a row, of which only the last one is queried after debouncing
+    private void zoom() throws InterruptedException {
+        final int events = 1 + random.nextInt(5);
+        for (int event = 0; event < events; event++) {
+            final long length = viewEnd - viewStart;
+            if (length > 1 && random.nextBoolean()) {
+                viewStart += length / 4;
+                viewEnd -= length / 4;
+            } else {
+                final long shift = (long) (length * (random.nextDouble() - 0.5));
+                viewStart += shift;
+                viewEnd += shift;
+            }
+        }
+        think(DEBOUNCE_MILLIS);
+        final long start = System.nanoTime();
+        service.getHistoryDataAsync(selected,
+            LocalDateTime.ofEpochSecond(viewStart, 0, ZoneOffset.UTC),
+            LocalDateTime.ofEpochSecond(viewEnd, 0, ZoneOffset.UTC),
+            CHART_POINTS).join();
+        record(Operation.ZOOM, start);
+    }
+
+    private void record(Operation operation, long startNanos) {
+        recorders.get(operation).recordValue(System.nanoTime() - startNanos);
+    }
+
+    // Exponentially distributed, like the time between the actions of independent users
+    private void think(long meanMillis) throws InterruptedException {
+        final long millis = (long) (-meanMillis * Math.log(1 - random.nextDouble()));
+        TimeUnit.MILLISECONDS.sleep(millis);
+    }
+}
@@ -0,0 +1,109 @@
+package com.vaadin.demo.stockdata.benchmark;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPointImpl;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.SymbolImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic synthetic symbols and data points, so that benchmarks can run without a database
+ * and give comparable results between runs. The points of a symbol are a random walk seeded by the
+ * symbol id and granularity.
+ */
+public final class SyntheticData {
+
+    /**
+     * The distance between consecutive data points
+     */
+    public enum Granularity {
+        DAY(TimeUnit.DAYS.toSeconds(1)),
+        HOUR(TimeUnit.HOURS.toSeconds(1)),
+        MINUTE(TimeUnit.MINUTES.toSeconds(1)),
+        SECOND(1);
+
+        private final long seconds;
+
+        Granularity(long seconds) {
+            this.seconds = seconds;
+        }
+
+        public long getSeconds() {
+            return seconds;
+        }
+    }
+
+    /**
+     * Epoch second of the first generated point of every symbol, a market open in 2019
+     */
+    public static final long START_TIME_STAMP = 1_546_439_400L;
+
+    private static final long START_PRICE_CENTS = 10_000;
+
+    private SyntheticData() {
+    }
+
+    /**
+     * @param count the number of symbols
+     * @return symbols with ids from 1 to the given count and generated tickers and names
+     */
+    public static List<Symbol> symbols(int count) {
+        final List<Symbol> symbols = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            symbols.add(new SymbolImpl()
+                .setId(id)
+                .setTicker(ticker(id))
+                .setName("Synthetic Company " + id));
+        }
+        return symbols;
+    }
+
+    // A, B, ..., Z, AA, AB, ..., so that tickers share prefixes like real ones do
+    private static String ticker(int id) {
+        final StringBuilder ticker = new StringBuilder();
+        for (int remaining = id; remaining > 0; remaining = (remaining - 1) / 26) {
+            ticker.append((char) ('A' + (remaining - 1) % 26));
+        }
+        return ticker.reverse().toString();
+    }
+
+    /**
+     * @param symbolId the id of the symbol
+     * @param granularity the distance between consecutive points
+     * @param count the number of points
+     * @return the points, in ascending time stamp order
+     */
+    public static List<DataPoint> points(int symbolId, Granularity granularity, int count) {
+        final SplittableRandom random = new SplittableRandom(symbolId * 31L + granularity.ordinal());
+        final List<DataPoint> points = new ArrayList<>(count);
+        long close = START_PRICE_CENTS;
+        for (int i = 0; i < count; i++) {
+            final long open = close;
+            close = Math.max(1, open + random.nextLong(-50, 51));
+            final long high = Math.max(open, close) + random.nextLong(0, 20);
+            final long low = Math.max(1, Math.min(open, close) - random.nextLong(0, 20));
+            points.add(new DataPointImpl()
+                .setSymbolId(symbolId)
+                .setTimeStamp(START_TIME_STAMP + i * granularity.getSeconds())
+                .setOpen(open)
+                .setClose(close)
+                .setHigh(high)
+                .setLow(low)
+                .setVolume(random.nextLong(1_000, 100_000)));
+        }
+        return points;
+    }
+
+    /**
+     * @param granularity the distance between consecutive points
+     * @param count the number of points
+     * @return the time stamp of the last of the given number of points
+     */
+    public static long endTimeStamp(Granularity granularity, int count) {
+        return START_TIME_STAMP + (count - 1) * granularity.getSeconds();
+    }
+}
@@ -1,8 +1,7 @@
 #!/usr/bin/env bash
 
 if [[ $# -eq 0 ]]; then
-    echo "You need to supply an API kep for Alpha Vantage to get trade data. Get one here: https://www.alphavantage.co/support/#api-key"
-    exit
+    echo "No API key for Alpha Vantage given, generating synthetic trade data. Get a key here: https://www.alphavantage.co/support/#api-key"
 fi
 
 API_KEY=$1
@@ -15,11 +15,17 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Stream;
 
+/**
+ * Fetches daily data points from Alpha Vantage, one request per call. Retries and the request
+ * quota are left to the {@link FetchScheduler}.
+ */
 class AlphaVantageClient {
 
-    private static final String REST_URI
-        = "https://www.alphavantage.co/query?function=TIME_SERIES_DAILY_ADJUSTED&symbol=%s&apikey=%s&outputsize=%s";
+    public static final String DEFAULT_BASE_URL = "https://www.alphavantage.co";
+    private static final String QUERY_PATH
+        = "/query?function=TIME_SERIES_DAILY_ADJUSTED&symbol=%s&apikey=%s&outputsize=%s";
     private static final String TIME_SERIES_KEY = "Time Series (Daily)";
+    private static final String ERROR_MESSAGE_KEY = "Error Message";
 
     public enum FetchSize {
         FULL("full"),
@@ -37,40 +43,44 @@ class AlphaVantageClient {
     }
 
     private final Client client;
+    private final String baseUrl;
 
     public AlphaVantageClient() {
+        this(DEFAULT_BASE_URL);
+    }
+
+    /**
+     * @param baseUrl the scheme, host and port of the API, such as a local stand-in when testing
+     */
+    public AlphaVantageClient(String baseUrl) {
         this.client = ClientBuilder.newBuilder().build();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
     }
 
+    /**
+     * @throws IllegalStateException if the response has no time series, as when the request quota
+     *                               is exceeded
+     * @throws javax.ws.rs.ProcessingException if the request fails
+     */
     @SuppressWarnings("unchecked")
-    private synchronized Map<String, Map<String, String>> getTimeSeries(String apiKey, Symbol symbol, FetchSize fetchSize) {
-        final String uri = String.format(REST_URI, symbol.getTicker(), apiKey, fetchSize.getRestOutputSize());
+    private Map<String, Map<String, String>> getTimeSeries(String apiKey, Symbol symbol, FetchSize fetchSize) {
+        final String uri = baseUrl + String.format(QUERY_PATH, symbol.getTicker(), apiKey, fetchSize.getRestOutputSize());
 
-        int retries = 12;
-        Exception lastException;
-        do {
-            try {
-                Map<String, Map> entries = client
-                    .target(uri)
-                    .request(MediaType.APPLICATION_JSON)
-                    .get(new GenericType<Map<String, Map>>() {});
-                return (Map<String, Map<String, String>>) entries.get(TIME_SERIES_KEY);
-            } catch (Exception e) {
-                lastException = e;
-            }
-            try {
-                System.out.println("Failed to fetch data for " + symbol.getName() + ", will retry after backing off");
-                Thread.sleep(5000);  // Back off, the API does not like to be spammed
-            } catch (InterruptedException e) {
-                //  Just continue then
-            }
-        } while (--retries > 0);
-        System.out.println();
-        System.out.println("Failed to get stock data for " + symbol.getName());
-        System.out.println("URI: " + uri);
-        lastException.printStackTrace();
-        System.out.println();
-        return Collections.emptyMap();
+        Map<String, Object> entries = client
+            .target(uri)
+            .request(MediaType.APPLICATION_JSON)
+            .get(new GenericType<Map<String, Object>>() {});
+        final Object timeSeries = entries.get(TIME_SERIES_KEY);
+        if (timeSeries != null) {
+            return (Map<String, Map<String, String>>) timeSeries;
+        }
+        if (entries.containsKey(ERROR_MESSAGE_KEY)) {
+            // An unknown ticker, asking again does not help
+            System.out.println("No stock data for " + symbol.getName() + ": " + entries.get(ERROR_MESSAGE_KEY));
+            return Collections.emptyMap();
+        }
+        // A note about the call frequency or some other message
+        throw new IllegalStateException("No time series in response " + entries);
     }
 
     public Stream<DataPoint> getDataPoints(String apiKey, Symbol symbol, FetchSize fetchSize) {
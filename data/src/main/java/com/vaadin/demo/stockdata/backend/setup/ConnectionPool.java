@@ -0,0 +1,80 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * A bounded set of JDBC connections shared by the writer threads. Connections are opened on first
+ * use and then reused for every batch, instead of connecting to the database for each one.
+ */
+class ConnectionPool implements AutoCloseable {
+    private final Supplier<Connection> connectionFactory;
+    private final ConcurrentLinkedQueue<Connection> idle;
+    private final Semaphore available;
+
+    /**
+     * @param connectionFactory opens a new connection
+     * @param size the maximum number of connections open at the same time
+     */
+    ConnectionPool(Supplier<Connection> connectionFactory, int size) {
+        this.connectionFactory = Objects.requireNonNull(connectionFactory);
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.available = new Semaphore(size);
+    }
+
+    /**
+     * Takes an idle connection, opening a new one if there is none, and waiting while all
+     * connections are in use.
+     *
+     * @return a connection to give back with {@link #release(Connection, boolean)}
+     */
+    Connection borrow() {
+        available.acquireUninterruptibly();
+        final Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        try {
+            return connectionFactory.get();
+        } catch (RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @param connection a connection taken with {@link #borrow()}
+     * @param broken true if the connection has failed and should be closed rather than reused
+     */
+    void release(Connection connection, boolean broken) {
+        if (broken) {
+            closeQuietly(connection);
+        } else {
+            idle.add(connection);
+        }
+        available.release();
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Already failed, nothing more to do
+        }
+    }
+
+    /**
+     * Closes all idle connections
+     */
+    @Override
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            closeQuietly(connection);
+        }
+    }
+}
@@ -1,112 +1,197 @@
 package com.vaadin.demo.stockdata.backend.setup;
 
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
-import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPointImpl;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.Random;
-import java.util.Spliterator;
-import java.util.Spliterators;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
-
-class DataPointExtrapolator implements Iterator<DataPoint> {
-    private final Iterator<DataPoint> realPoints;
-    private final Random random;
-    final private int symbolId;
-    private DataPoint left;
-    private DataPoint right;
-    private long timeDelta;
-    private long highDelta;
-    private long lowDelta;
-    private long timeForNextPoint;
-    final private long extrapolateStep;
-    private double trend;
-    private long lastClose;
-    private DataPoint next;
-
-    static Stream<DataPoint> extrapolate(Stream<DataPoint> givenPoints, long extrapolateStep) {
-        DataPointExtrapolator iterator = new DataPointExtrapolator(givenPoints, extrapolateStep);
-        return StreamSupport.stream(
-                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED),
-                false)
-                .onClose(givenPoints::close);
-    }
 
-    private DataPointExtrapolator(Stream<DataPoint> pointStream, long extrapolateStep) {
-        this.realPoints = pointStream.iterator();
-        this.extrapolateStep = extrapolateStep;
-        if (realPoints.hasNext()) {
-            right = realPoints.next();
-            random = new Random();
-            symbolId = right.getSymbolId();
-            timeForNextPoint = right.getTimeStamp();
-            advance();
-        } else {
-            random = null;
-            symbolId = 0;
-            next = null;  // explicit just to be clear
+/**
+ * Fills the gaps between the given data points of a symbol with random walk points at a fixed
+ * step. The points are passed to a {@link PointSink} as primitive values, so no object is created
+ * for any extrapolated point.
+ *
+ * Each gap between two given points is a segment of its own, with a random walk seeded from the
+ * symbol and the time stamp the segment starts at. Segments are independent of each other, so
+ * they are extrapolated in parallel as fork/join tasks, which idle workers steal from the symbols
+ * still being extrapolated, and the same seed always gives the same points.
+ */
+class DataPointExtrapolator {
+    public static final long DEFAULT_SEED = 42;
+
+    /**
+     * The number of given points read into each chunk of segments. Chunks are read and forked one
+     * at a time, so the given points of a symbol are never all in memory at once.
+     */
+    private static final int ANCHORS_PER_CHUNK = 1024;
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * @param givenPoints the points of one symbol in time stamp order, closed when extrapolated
+     * @param extrapolateStep the time between extrapolated points
+     * @param seed the seed the random walk of every segment is derived from
+     * @param pointsPerTask the number of points above which a task is split in two
+     * @param sinks creates a batcher for each task, which is closed when the task is done
+     */
+    static void extrapolate(Stream<DataPoint> givenPoints, long extrapolateStep, long seed, long pointsPerTask,
+                            Supplier<BatchPointCreator> sinks) {
+        final Deque<ForkJoinTask<?>> forked = new ArrayDeque<>();
+        final int maxForked = 2 * (ForkJoinTask.inForkJoinPool()
+            ? ForkJoinTask.getPool().getParallelism()
+            : ForkJoinPool.getCommonPoolParallelism());
+        try (Stream<DataPoint> points = givenPoints) {
+            final Iterator<DataPoint> realPoints = points.iterator();
+            Anchors anchors = null;
+            while (realPoints.hasNext()) {
+                final DataPoint point = realPoints.next();
+                if (anchors == null) {
+                    anchors = new Anchors(point.getSymbolId());
+                }
+                anchors.add(point);
+                if (anchors.size == ANCHORS_PER_CHUNK) {
+                    forked.add(new Segments(anchors, 0, anchors.size - 1, extrapolateStep, seed, pointsPerTask, sinks).fork());
+                    // The next chunk starts where this one ends
+                    anchors = anchors.next();
+                    if (forked.size() > maxForked) {
+                        forked.removeFirst().join();
+                    }
+                }
+            }
+            if (anchors != null && anchors.size > 1) {
+                forked.add(new Segments(anchors, 0, anchors.size - 1, extrapolateStep, seed, pointsPerTask, sinks).fork());
+            }
+        } finally {
+            forked.forEach(ForkJoinTask::join);
         }
     }
 
-    private boolean stepRealTime() {
-        while (realPoints.hasNext()) {
-            left = right;
-            right = realPoints.next();
-            timeForNextPoint = left.getTimeStamp() + extrapolateStep;
-            if (timeForNextPoint < right.getTimeStamp()) {
-                timeDelta = right.getTimeStamp() - left.getTimeStamp();
-                highDelta = right.getHigh() - left.getHigh();
-                lowDelta = right.getLow() - left.getLow();
-                lastClose = left.getClose();
-                next = createNextDataPoint(timeForNextPoint);
-                return true;
+    /**
+     * Extrapolates the points of a single segment
+     *
+     * @param seed the seed of the random walk of the segment
+     */
+    static void fillGap(int symbolId, long fromTimeStamp, long fromHigh, long fromLow, long fromClose,
+                        long toTimeStamp, long toHigh, long toLow, long extrapolateStep, long seed, PointSink sink) {
+        final SplittableRandom random = new SplittableRandom(seed);
+        final long timeDelta = toTimeStamp - fromTimeStamp;
+        final long highDelta = toHigh - fromHigh;
+        final long lowDelta = toLow - fromLow;
+        double trend = 0;
+        long lastClose = fromClose;
+        for (long time = fromTimeStamp + extrapolateStep; time < toTimeStamp; time += extrapolateStep) {
+            final float factor = (float) (time - fromTimeStamp) / timeDelta;
+            final long high = fromHigh + (long) (highDelta * factor);
+            final long low = fromLow + (long) (lowDelta * factor);
+            trend += random.nextDouble() - 0.5;
+            lastClose += trend;
+            if (lastClose > high) {
+                lastClose = high;
+                trend = -1;
+            } else if (lastClose < low) {
+                lastClose = low;
+                trend = 1;
             }
+            sink.accept(symbolId, time, lastClose, lastClose, high, low, 0);
         }
-        return false;
     }
 
-    @Override
-    public boolean hasNext() {
-        return next != null;
+    /**
+     * @return the seed of the segment of the symbol starting at the time stamp
+     */
+    static long segmentSeed(long seed, int symbolId, long timeStamp) {
+        return (seed * GOLDEN_GAMMA + symbolId) * GOLDEN_GAMMA + timeStamp;
     }
 
-    private void advance() {
-        while (timeForNextPoint >= right.getTimeStamp()) {
-            if (!stepRealTime()) {
-                next = null;
-                return;
-            }
+    private static long pointCount(long fromTimeStamp, long toTimeStamp, long extrapolateStep) {
+        return toTimeStamp > fromTimeStamp ? (toTimeStamp - fromTimeStamp - 1) / extrapolateStep : 0;
+    }
+
+    /**
+     * The fields of a run of given points needed to extrapolate between them
+     */
+    private static final class Anchors {
+        private final int symbolId;
+        private final long[] timeStamps = new long[ANCHORS_PER_CHUNK];
+        private final long[] highs = new long[ANCHORS_PER_CHUNK];
+        private final long[] lows = new long[ANCHORS_PER_CHUNK];
+        private final long[] closes = new long[ANCHORS_PER_CHUNK];
+        private int size;
+
+        private Anchors(int symbolId) {
+            this.symbolId = symbolId;
         }
 
-        next = createNextDataPoint(timeForNextPoint);
-        timeForNextPoint += extrapolateStep;
-    }
+        private void add(DataPoint point) {
+            add(point.getTimeStamp(), point.getHigh(), point.getLow(), point.getClose());
+        }
+
+        private void add(long timeStamp, long high, long low, long close) {
+            timeStamps[size] = timeStamp;
+            highs[size] = high;
+            lows[size] = low;
+            closes[size] = close;
+            size++;
+        }
 
-    @Override
-    public DataPoint next() {
-        DataPoint result = next;
-        advance();
-        return result;
+        /**
+         * @return a new chunk starting with the last anchor of this one
+         */
+        private Anchors next() {
+            final Anchors next = new Anchors(symbolId);
+            final int last = size - 1;
+            next.add(timeStamps[last], highs[last], lows[last], closes[last]);
+            return next;
+        }
     }
 
-    private DataPoint createNextDataPoint(long time) {
-        DataPoint next = new DataPointImpl().setSymbolId(symbolId).setTimeStamp(time);
-        final float factor = (float)(time - left.getTimeStamp()) / timeDelta;
-        next.setHigh(left.getHigh() + (long) (highDelta * factor));
-        next.setLow(left.getLow() + (long) (lowDelta * factor));
-        trend += random.nextFloat() - 0.5;
-        lastClose += trend;
-        if (lastClose > next.getHigh()) {
-            lastClose = next.getHigh();
-            trend = -1;
-        } else if (lastClose < next.getLow()) {
-            lastClose = next.getLow();
-            trend = 1;
+    /**
+     * Extrapolates the segments starting at the anchors from and up to, but not including, to.
+     * Splits itself in two while it holds more than one segment and more points than a task should.
+     */
+    private static final class Segments extends RecursiveAction {
+        private final Anchors anchors;
+        private final int from;
+        private final int to;
+        private final long extrapolateStep;
+        private final long seed;
+        private final long pointsPerTask;
+        private final Supplier<BatchPointCreator> sinks;
+
+        private Segments(Anchors anchors, int from, int to, long extrapolateStep, long seed, long pointsPerTask,
+                         Supplier<BatchPointCreator> sinks) {
+            this.anchors = anchors;
+            this.from = from;
+            this.to = to;
+            this.extrapolateStep = extrapolateStep;
+            this.seed = seed;
+            this.pointsPerTask = pointsPerTask;
+            this.sinks = sinks;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && pointCount(anchors.timeStamps[from], anchors.timeStamps[to], extrapolateStep) > pointsPerTask) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(
+                    new Segments(anchors, from, middle, extrapolateStep, seed, pointsPerTask, sinks),
+                    new Segments(anchors, middle, to, extrapolateStep, seed, pointsPerTask, sinks));
+                return;
+            }
+            try (BatchPointCreator sink = sinks.get()) {
+                for (int i = from; i < to; i++) {
+                    fillGap(anchors.symbolId,
+                        anchors.timeStamps[i], anchors.highs[i], anchors.lows[i], anchors.closes[i],
+                        anchors.timeStamps[i + 1], anchors.highs[i + 1], anchors.lows[i + 1],
+                        extrapolateStep, segmentSeed(seed, anchors.symbolId, anchors.timeStamps[i]), sink);
+                }
+            }
         }
-        next.setClose(lastClose);
-        next.setOpen(lastClose);
-        next.setVolume(0);
-        return next;
     }
 }
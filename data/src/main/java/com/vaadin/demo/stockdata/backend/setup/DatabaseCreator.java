@@ -4,8 +4,6 @@ import com.speedment.common.benchmark.Stopwatch;
 import com.speedment.common.benchmark.internal.StopwatchImpl;
 import com.speedment.runtime.core.Speedment;
 import com.speedment.runtime.core.exception.SpeedmentException;
-import com.speedment.runtime.core.manager.Manager;
-import com.speedment.runtime.core.stream.parallel.ParallelStrategy;
 import com.vaadin.demo.stockdata.backend.db.StockdataApplicationBuilder;
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
 import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPointManager;
@@ -22,42 +20,110 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.*;
 
 public class DatabaseCreator implements AutoCloseable {
     private static final String JDBC_DRIVER = "com.mysql.jdbc.Driver";
     private static final String CONNECTION_URL = "jdbc:mysql://%s";
-    private static final String CONNECTION_URL_WITH_DB = "jdbc:mysql://%s/stockdata?useSSL=false&useServerPrepStmts=true";
+    private static final String CONNECTION_URL_WITH_DB = "jdbc:mysql://%s/stockdata?useSSL=false&useServerPrepStmts=true&allowLoadLocalInfile=true";
     private static final String SCHEMA_SQL_RESOURCE_NAME = "/Schema.sql";
     private static final String TICKER_LIST_RESOURCE_NAME = "/nasdaq_tickers.csv";
     private static final long SYMBOL_COUNT_LIMIT = 100;  // Long.MAX_VALUE;
     private static final long MAX_PRESENT_WHEN_FETCHING_NEW = 100_000;
+    private static final String WRITERS_VARIABLE_NAME = "STOCKS_WRITERS";
+    private static final String BATCH_SIZE_VARIABLE_NAME = "STOCKS_BATCH_SIZE";
+    private static final String BULK_BATCH_SIZE_VARIABLE_NAME = "STOCKS_BULK_BATCH_SIZE";
+    private static final String BULK_LOAD_PHASES_VARIABLE_NAME = "STOCKS_BULK_LOAD_PHASES";
+    private static final String SEED_VARIABLE_NAME = "STOCKS_SEED";
+    private static final String DENSITY_VARIABLE_NAME = "STOCKS_DENSITY";
+    private static final String SYNTHETIC_SYMBOLS_VARIABLE_NAME = "STOCKS_SYNTHETIC_SYMBOLS";
+    private static final String SYNTHETIC_DAYS_VARIABLE_NAME = "STOCKS_SYNTHETIC_DAYS";
+    private static final String SYNTHETIC_END_DATE_VARIABLE_NAME = "STOCKS_SYNTHETIC_END_DATE";
+    private static final String ALPHA_VANTAGE_URL_VARIABLE_NAME = "STOCKS_ALPHA_VANTAGE_URL";
+    private static final String FETCH_RATE_VARIABLE_NAME = "STOCKS_FETCH_RATE";
+    private static final String FETCH_BURST_VARIABLE_NAME = "STOCKS_FETCH_BURST";
+    private static final String FETCH_CONCURRENCY_VARIABLE_NAME = "STOCKS_FETCH_CONCURRENCY";
+    private static final int MAX_TICKER_LENGTH = 10;
 
     private final String hostIp;
     private final String user;
     private final String password;
-    private final String apiKey;
+    private final FetchScheduler fetcher;
+    private final int writers;
+    private final int batchSize;
+    private final int bulkBatchSize;
+    private final Set<UpdatePhase> bulkLoadPhases;
+    private final long seed;
+    private final TimeUnit density;
+    private final long symbolCount;
+    private final SyntheticDataGenerator generator;
     private final Speedment app;
 
     public DatabaseCreator(String hostIp, String user, String password, String apiKey) {
+        this(hostIp, user, password, new FetchScheduler(new AlphaVantageClient(), apiKey), PointWriter.DEFAULT_WRITERS, PointWriter.DEFAULT_BATCH_SIZE,
+            PointWriter.DEFAULT_BULK_BATCH_SIZE, defaultBulkLoadPhases(), DataPointExtrapolator.DEFAULT_SEED,
+            SECONDS, SYMBOL_COUNT_LIMIT, null);
+    }
+
+    /**
+     * @param fetcher fetches the daily data points from Alpha Vantage, or null when generating them
+     * @param writers the number of threads inserting data points, each over its own connection
+     * @param batchSize the number of data points inserted in each transaction
+     * @param bulkBatchSize the number of data points bulk loaded in each transaction
+     * @param bulkLoadPhases the phases writing data points with LOAD DATA LOCAL INFILE rather than
+     *                       INSERT, if enabled on the server
+     * @param seed the seed of the extrapolated random walks, the same seed extrapolates the same points
+     * @param density the finest granularity to extrapolate data points at, later phases are skipped
+     * @param symbolCount the number of symbols to create, more than in the ticker list only when
+     *                    generating data points
+     * @param generator generates the daily data points instead of fetching them from Alpha Vantage,
+     *                  or null when fetching them
+     */
+    DatabaseCreator(String hostIp, String user, String password, FetchScheduler fetcher, int writers, int batchSize,
+                    int bulkBatchSize, Set<UpdatePhase> bulkLoadPhases, long seed, TimeUnit density,
+                    long symbolCount, SyntheticDataGenerator generator) {
         this.hostIp = hostIp;
         this.user = user;
         this.password = password;
-        this.apiKey = apiKey;
+        this.fetcher = fetcher;
+        this.writers = writers;
+        this.batchSize = batchSize;
+        this.bulkBatchSize = bulkBatchSize;
+        this.bulkLoadPhases = EnumSet.noneOf(UpdatePhase.class);
+        this.bulkLoadPhases.addAll(bulkLoadPhases);
+        this.seed = seed;
+        this.density = density;
+        this.symbolCount = symbolCount;
+        this.generator = generator;
         this.app = createApp();
     }
 
+    private static Set<UpdatePhase> defaultBulkLoadPhases() {
+        return Arrays.stream(UpdatePhase.values())
+            .filter(phase -> phase.getDefaultWriteMode() == PointWriter.Mode.BULK_LOAD)
+            .collect(toCollection(() -> EnumSet.noneOf(UpdatePhase.class)));
+    }
+
     @Override
     public void close() {
+        if (fetcher != null) {
+            fetcher.close();
+        }
         app.close();
     }
 
@@ -77,7 +143,7 @@ public class DatabaseCreator implements AutoCloseable {
             System.out.println("Unable to load symbols. Recreating database.");
             wipeDatabase();
             System.out.println("Creating symbols...");
-            getNadaqSymbols().forEach(symbols::persist);
+            getNadaqSymbols(symbolCount, generator != null).forEach(symbols::persist);
         }
 
         final long symbolCount = symbols.stream().count();
@@ -100,74 +166,147 @@ public class DatabaseCreator implements AutoCloseable {
             }
         };
 
-        final AlphaVantageClient stockClient = new AlphaVantageClient();
+        final List<Symbol> symbolList = symbols.stream().collect(toList());
 
-        final Manager<Symbol> symbolManager = app.configure(SymbolManager.class)
-            .withParallelStrategy(ParallelStrategy.computeIntensityExtreme())
-            .build();
+        Supplier<Connection> connectionSupplier = () -> {
+            try {
+                return DriverManager.getConnection(
+                    String.format(CONNECTION_URL_WITH_DB, hostIp),
+                    user,
+                    password);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        };
 
+        try (ConnectionPool connections = new ConnectionPool(connectionSupplier, writers);
+             PointWriter writer = new PointWriter(connections, writers, batchSize, bulkBatchSize, progressConsumer)) {
+            populate(symbolList, dataPoints, writer, realDataCount, startedSymbols, doneSymbols);
+        }
+    }
 
+    private void populate(List<Symbol> symbols, DataPointManager dataPoints, PointWriter writer,
+                          AtomicLong realDataCount, AtomicLong startedSymbols, AtomicLong doneSymbols) {
         for (UpdatePhase phase : UpdatePhase.values()) {
+            if (phase.getExtrapolateStep().filter(step -> step < density.toSeconds(1)).isPresent()) {
+                System.out.println("Skipping update phase " + phase + ", finer than " + density);
+                continue;
+            }
             System.out.println("Update phase " + phase);
             System.out.println("Fetching and extrapolating data for symbols: <done/started/all> ");
             startedSymbols.set(0);
             doneSymbols.set(0);
             Optional<FetchSize> fetchSize = phase.getFetchSize();
             Optional<Long> extrapolateStep = phase.getExtrapolateStep();
+            PointWriter.Mode writeMode = bulkLoadPhases.contains(phase) ? PointWriter.Mode.BULK_LOAD : PointWriter.Mode.INSERT;
+            if (writeMode == PointWriter.Mode.BULK_LOAD && !writer.isBulkLoadSupported()) {
+                System.out.println("The server does not allow LOAD DATA LOCAL INFILE (local_infile is OFF), inserting instead");
+                writeMode = PointWriter.Mode.INSERT;
+            }
+            final PointWriter.Mode mode = writeMode;
+
+            // Fetched ahead of the symbols being taken by the workers below, in the same order
+            final FetchScheduler.Prefetch prefetch = fetcher == null ? null : fetchSize
+                .map(size -> fetcher.prefetch(symbols, size, symbol -> presentCount(dataPoints, symbol) < MAX_PRESENT_WHEN_FETCHING_NEW))
+                .orElse(null);
+
+            // Each worker takes the next symbol in order, and extrapolates in the common pool, until
+            // all symbols are taken or a worker has failed
+            final AtomicInteger nextSymbol = new AtomicInteger();
+            final AtomicBoolean failed = new AtomicBoolean();
+            final Runnable worker = () -> {
+                try {
+                    for (int index = nextSymbol.getAndIncrement(); index < symbols.size() && !failed.get(); index = nextSymbol.getAndIncrement()) {
+                        final Symbol symbol = symbols.get(index);
+                        startedSymbols.incrementAndGet();
+
+                        final List<DataPoint> fetched = prefetch == null ? Collections.emptyList() : prefetch.take(index);
+                        long presentCount = presentCount(dataPoints, symbol);
 
-            symbolManager.stream()
-                .parallel()
-                .forEach(symbol -> {
-                    startedSymbols.incrementAndGet();
-
-                    long presentCount = dataPoints.stream()
-                        .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
-                        .count();
-
-                    Supplier<Connection> connectionSupplier = () -> {
-                        try {
-                            return DriverManager.getConnection(
-                                String.format(CONNECTION_URL_WITH_DB, hostIp),
-                                user,
-                                password);
-                        } catch (SQLException e) {
-                            throw new RuntimeException(e);
-                        }
-                    };
-
-                    try(BatchPointCreator persister = new BatchPointCreator(connectionSupplier, progressConsumer)) {
                         if (presentCount < MAX_PRESENT_WHEN_FETCHING_NEW) {
-                            fetchSize.ifPresent(size -> {
-                                Set<Long> presentTimeStamps = dataPoints.stream()
-                                    .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
-                                    .map(DataPoint.TIME_STAMP.getter()::apply)
-                                    .collect(toSet());
-
-                                List<DataPoint> realData = stockClient.getDataPoints(apiKey, symbol, size)
-                                    .filter(point -> !presentTimeStamps.contains(point.getTimeStamp()))
-                                    .collect(Collectors.toList());
-
-                                realDataCount.addAndGet(realData.size());
-                                realData.forEach(persister);
-                            });
-                            persister.flush();
+                            // Closed before extrapolating, so that the new points are in the database to
+                            // extrapolate between, and no batch is held while the segments wait for theirs
+                            try (BatchPointCreator persister = new BatchPointCreator(writer, mode)) {
+                                fetchSize.ifPresent(size -> {
+                                    Set<Long> presentTimeStamps = dataPoints.stream()
+                                        .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
+                                        .map(DataPoint.TIME_STAMP.getter()::apply)
+                                        .collect(toSet());
+
+                                    if (generator != null) {
+                                        realDataCount.addAndGet(generator.generate(symbol.getId(), size, presentTimeStamps, persister));
+                                        return;
+                                    }
+
+                                    List<DataPoint> realData = fetched.stream()
+                                        .filter(point -> !presentTimeStamps.contains(point.getTimeStamp()))
+                                        .collect(toList());
+
+                                    realDataCount.addAndGet(realData.size());
+                                    realData.forEach(persister);
+                                });
+                            }
                         }
                         Stream<DataPoint> current = dataPoints.stream()
                             .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
                             .sorted(DataPoint.TIME_STAMP);
 
-                        extrapolateStep.ifPresent(step -> DataPointExtrapolator.extrapolate(current, step)
-                            .forEach(persister)
-                        );
-                    }
+                        // The segments of the symbol are extrapolated in parallel, each into its own batches
+                        extrapolateStep.ifPresent(step -> DataPointExtrapolator.extrapolate(current, step, seed,
+                            writer.getBatchSize(mode), () -> new BatchPointCreator(writer, mode)));
 
-                    doneSymbols.incrementAndGet();
+                        doneSymbols.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    // Such as an interrupted fetch, the symbols not done are not to be persisted without
+                    // their points, so the other workers stop and the fetches waited for are cancelled
+                    failed.set(true);
+                    if (prefetch != null) {
+                        prefetch.close();
+                    }
+                    throw e;
+                }
+            };
+            final List<ForkJoinTask<?>> workers = new ArrayList<>();
+            for (int i = 0; i < ForkJoinPool.getCommonPoolParallelism(); i++) {
+                workers.add(ForkJoinPool.commonPool().submit(worker));
+            }
+            // Every worker is waited for, so that none is still writing once the writer is closed
+            RuntimeException failure = null;
+            try {
+                for (ForkJoinTask<?> task : workers) {
+                    try {
+                        task.join();
+                    } catch (RuntimeException e) {
+                        if (failure == null) {
+                            failure = e;
+                        }
+                    }
+                }
+            } finally {
+                if (prefetch != null) {
+                    prefetch.close();
+                }
+            }
+            if (failure != null) {
+                System.out.println("Stopping in update phase " + phase + " after a failure");
+                throw failure;
+            }
 
-                });
+            if (mode == PointWriter.Mode.BULK_LOAD) {
+                System.out.println("Analyzing the bulk loaded data points");
+                writer.analyze();
+            }
         }
 
     }
 
+    private static long presentCount(DataPointManager dataPoints, Symbol symbol) {
+        return dataPoints.stream()
+            .filter(DataPoint.SYMBOL_ID.equal(symbol.getId()))
+            .count();
+    }
+
     private void sleep(long duration) {
         try {
             Thread.sleep(duration);
@@ -258,12 +397,17 @@ public class DatabaseCreator implements AutoCloseable {
 
     private static Pattern LINE_PATTERN = Pattern.compile("\"([^\"]+)\",\"([^\"]+)\".*$");
 
-    private List<Symbol> getNadaqSymbols() throws IOException {
+    /**
+     * @param count the number of symbols to return
+     * @param repeat whether to repeat the ticker list, with numbered tickers, when it has fewer symbols
+     */
+    private List<Symbol> getNadaqSymbols(long count, boolean repeat) throws IOException {
+        final List<Symbol> listed;
         try (final InputStream in = DatabaseCreator.class.getResourceAsStream(TICKER_LIST_RESOURCE_NAME);
              final InputStreamReader reader = new InputStreamReader(in);
              final BufferedReader buf = new BufferedReader(reader))
         {
-            return buf.lines()
+            listed = buf.lines()
                 .skip(1)  // the header of the csv file
                 .flatMap(line -> {
                     Matcher matcher = LINE_PATTERN.matcher(line);
@@ -275,26 +419,68 @@ public class DatabaseCreator implements AutoCloseable {
                     return Stream.empty();
                 })
                 .sorted(Symbol.TICKER)
-                .limit(SYMBOL_COUNT_LIMIT)
                 .collect(toList());
         }
+        final List<Symbol> symbols = new ArrayList<>();
+        for (int round = 1; symbols.size() < count && (round == 1 || repeat); round++) {
+            for (Symbol symbol : listed) {
+                if (symbols.size() == count) {
+                    break;
+                }
+                symbols.add(round == 1 ? symbol : numbered(symbol, round));
+            }
+        }
+        return symbols;
+    }
+
+    private static Symbol numbered(Symbol symbol, int round) {
+        final String suffix = "." + round;
+        final String ticker = symbol.getTicker();
+        return new SymbolImpl()
+            .setTicker(ticker.substring(0, Math.min(ticker.length(), MAX_TICKER_LENGTH - suffix.length())) + suffix)
+            .setName(symbol.getName() + " " + round);
+    }
+
+    private static int getEnvInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long getEnvLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Long.parseLong(value);
     }
 
     private static void usage() {
-        System.out.println("Usage: <ip address> <user> <password> <api key>");
+        System.out.println("Usage: <ip address> <user> <password> [<api key>]");
         System.out.println("       <ip address>: IP address of MySQL host");
         System.out.println("       <user>      : MySQL user name");
         System.out.println("       <password>  : MySQL password");
         System.out.println("       <api key>   : Alpha Vantage API Key, get it here:");
         System.out.println("                     https://www.alphavantage.co/support/#api-key");
+        System.out.println("                     Without it, synthetic data points are generated offline");
+        System.out.println("Environment variables:");
+        System.out.println("       " + WRITERS_VARIABLE_NAME + "   : number of threads inserting data points, defaults to " + PointWriter.DEFAULT_WRITERS);
+        System.out.println("       " + BATCH_SIZE_VARIABLE_NAME + ": number of data points per transaction, defaults to " + PointWriter.DEFAULT_BATCH_SIZE);
+        System.out.println("       " + BULK_BATCH_SIZE_VARIABLE_NAME + ": number of data points per bulk load, defaults to " + PointWriter.DEFAULT_BULK_BATCH_SIZE);
+        System.out.println("       " + BULK_LOAD_PHASES_VARIABLE_NAME + ": comma separated update phases to bulk load, defaults to " + defaultBulkLoadPhases());
+        System.out.println("       " + SEED_VARIABLE_NAME + "     : seed of the extrapolated random walks, defaults to " + DataPointExtrapolator.DEFAULT_SEED);
+        System.out.println("       " + DENSITY_VARIABLE_NAME + "  : finest granularity of data points, DAYS, HOURS, MINUTES or SECONDS, defaults to " + SECONDS);
+        System.out.println("       " + ALPHA_VANTAGE_URL_VARIABLE_NAME + ": base URL of the Alpha Vantage API, defaults to " + AlphaVantageClient.DEFAULT_BASE_URL);
+        System.out.println("       " + FETCH_RATE_VARIABLE_NAME + "       : Alpha Vantage requests per minute, defaults to " + FetchScheduler.DEFAULT_REQUESTS_PER_MINUTE);
+        System.out.println("       " + FETCH_BURST_VARIABLE_NAME + "      : Alpha Vantage requests made at once after being idle, defaults to " + FetchScheduler.DEFAULT_BURST);
+        System.out.println("       " + FETCH_CONCURRENCY_VARIABLE_NAME + ": concurrent Alpha Vantage requests, defaults to " + FetchScheduler.DEFAULT_CONCURRENCY);
+        System.out.println("       " + SYNTHETIC_SYMBOLS_VARIABLE_NAME + " : number of symbols to generate, defaults to " + SYMBOL_COUNT_LIMIT);
+        System.out.println("       " + SYNTHETIC_DAYS_VARIABLE_NAME + "    : number of days of history to generate, defaults to " + SyntheticDataGenerator.DEFAULT_HISTORY_DAYS);
+        System.out.println("       " + SYNTHETIC_END_DATE_VARIABLE_NAME + ": last day of generated history as yyyy-mm-dd, defaults to today");
         System.exit(1);
     }
 
     public static void main(String[] args) throws ClassNotFoundException, IOException {
 
-        if (args.length != 4) {
+        if (args.length != 3 && args.length != 4) {
             String params = Arrays.stream(args).collect(joining("', '"));
-            System.out.println("Needs 4 parameters, but got '" + params + "'");
+            System.out.println("Needs 3 or 4 parameters, but got '" + params + "'");
             usage();
         }
 
@@ -308,9 +494,47 @@ public class DatabaseCreator implements AutoCloseable {
         String hostIp = args[0];
         String user = args[1];
         String password = args[2];
-        String apiKey = args[3];
+        String apiKey = args.length == 4 ? args[3] : null;
+
+        int writers = getEnvInt(WRITERS_VARIABLE_NAME, PointWriter.DEFAULT_WRITERS);
+        int batchSize = getEnvInt(BATCH_SIZE_VARIABLE_NAME, PointWriter.DEFAULT_BATCH_SIZE);
+        int bulkBatchSize = getEnvInt(BULK_BATCH_SIZE_VARIABLE_NAME, PointWriter.DEFAULT_BULK_BATCH_SIZE);
+        String bulkLoadPhaseNames = System.getenv(BULK_LOAD_PHASES_VARIABLE_NAME);
+        Set<UpdatePhase> bulkLoadPhases = bulkLoadPhaseNames == null
+            ? defaultBulkLoadPhases()
+            : Arrays.stream(bulkLoadPhaseNames.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(UpdatePhase::valueOf)
+                .collect(toCollection(() -> EnumSet.noneOf(UpdatePhase.class)));
+        long seed = getEnvLong(SEED_VARIABLE_NAME, DataPointExtrapolator.DEFAULT_SEED);
+        String densityName = System.getenv(DENSITY_VARIABLE_NAME);
+        TimeUnit density = densityName == null ? SECONDS : TimeUnit.valueOf(densityName.trim());
+
+        long symbolCount = SYMBOL_COUNT_LIMIT;
+        FetchScheduler fetcher = null;
+        SyntheticDataGenerator generator = null;
+        if (apiKey != null) {
+            String baseUrl = System.getenv(ALPHA_VANTAGE_URL_VARIABLE_NAME);
+            String rate = System.getenv(FETCH_RATE_VARIABLE_NAME);
+            fetcher = new FetchScheduler(new AlphaVantageClient(baseUrl == null ? AlphaVantageClient.DEFAULT_BASE_URL : baseUrl),
+                apiKey,
+                rate == null ? FetchScheduler.DEFAULT_REQUESTS_PER_MINUTE : Double.parseDouble(rate),
+                getEnvInt(FETCH_BURST_VARIABLE_NAME, FetchScheduler.DEFAULT_BURST),
+                getEnvInt(FETCH_CONCURRENCY_VARIABLE_NAME, FetchScheduler.DEFAULT_CONCURRENCY),
+                FetchScheduler.DEFAULT_MAX_ATTEMPTS,
+                FetchScheduler.DEFAULT_INITIAL_BACKOFF,
+                FetchScheduler.DEFAULT_MAX_BACKOFF);
+        } else {
+            symbolCount = getEnvLong(SYNTHETIC_SYMBOLS_VARIABLE_NAME, SYMBOL_COUNT_LIMIT);
+            int historyDays = getEnvInt(SYNTHETIC_DAYS_VARIABLE_NAME, SyntheticDataGenerator.DEFAULT_HISTORY_DAYS);
+            String endDate = System.getenv(SYNTHETIC_END_DATE_VARIABLE_NAME);
+            generator = new SyntheticDataGenerator(seed, historyDays, endDate == null ? LocalDate.now() : LocalDate.parse(endDate));
+            System.out.println("No API key given, generating " + symbolCount + " symbols with " + historyDays + " days of history");
+        }
 
-        try (final DatabaseCreator creator = new DatabaseCreator(hostIp, user, password, apiKey)) {
+        try (final DatabaseCreator creator = new DatabaseCreator(hostIp, user, password, fetcher, writers, batchSize,
+            bulkBatchSize, bulkLoadPhases, seed, density, symbolCount, generator)) {
             creator.createAndPopulate();
         }
     }
@@ -0,0 +1,77 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Data point rows encoded as tab separated, newline terminated ASCII text, the default format of
+ * MySQL's LOAD DATA. Numbers are written digit by digit into a reusable byte array, so encoding
+ * does not create any strings.
+ */
+class DelimitedRows {
+    private static final byte FIELD_SEPARATOR = '\t';
+    private static final byte LINE_SEPARATOR = '\n';
+
+    private final byte[] digits = new byte[20];
+    private byte[] bytes = new byte[1 << 16];
+    private int length;
+
+    void clear() {
+        length = 0;
+    }
+
+    void add(int symbolId, long timeStamp, long open, long close, long high, long low, long volume) {
+        // Each field takes at most 20 characters and a separator
+        ensureCapacity(7 * 21);
+        append(symbolId);
+        bytes[length++] = FIELD_SEPARATOR;
+        append(timeStamp);
+        bytes[length++] = FIELD_SEPARATOR;
+        append(open);
+        bytes[length++] = FIELD_SEPARATOR;
+        append(close);
+        bytes[length++] = FIELD_SEPARATOR;
+        append(high);
+        bytes[length++] = FIELD_SEPARATOR;
+        append(low);
+        bytes[length++] = FIELD_SEPARATOR;
+        append(volume);
+        bytes[length++] = LINE_SEPARATOR;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+        }
+    }
+
+    private void append(long value) {
+        if (value == Long.MIN_VALUE) {
+            for (byte b : Long.toString(value).getBytes()) {
+                bytes[length++] = b;
+            }
+            return;
+        }
+        long remaining = value;
+        if (remaining < 0) {
+            bytes[length++] = '-';
+            remaining = -remaining;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        while (count > 0) {
+            bytes[length++] = digits[--count];
+        }
+    }
+
+    /**
+     * @return a stream over the rows added since the last clear, valid until the next change
+     */
+    InputStream toInputStream() {
+        return new ByteArrayInputStream(bytes, 0, length);
+    }
+}
@@ -0,0 +1,253 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.data_point.DataPoint;
+import com.vaadin.demo.stockdata.backend.db.demodata.stockdata.symbol.Symbol;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Fetches data points from Alpha Vantage for many symbols at once, within the request quota of
+ * the API key. Requests are made by a fixed number of fetch threads, each taking a token from a
+ * shared token bucket before every request, and failed requests are retried after an exponential
+ * backoff with full jitter, so that throttled fetch threads do not retry in lock step.
+ *
+ * A {@link Prefetch} fetches the symbols of an update phase ahead of the threads persisting them,
+ * so the network requests and the parsing of the responses overlap with writing the points.
+ */
+class FetchScheduler implements AutoCloseable {
+    // The free Alpha Vantage quota
+    public static final double DEFAULT_REQUESTS_PER_MINUTE = 5;
+    // Evenly paced requests
+    public static final int DEFAULT_BURST = 1;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 12;
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofSeconds(1);
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(1);
+
+    private static final CompletableFuture<List<DataPoint>> TAKEN = CompletableFuture.completedFuture(Collections.emptyList());
+
+    private final AlphaVantageClient client;
+    private final String apiKey;
+    private final TokenBucket tokens;
+    private final ExecutorService fetchers;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    FetchScheduler(AlphaVantageClient client, String apiKey) {
+        this(client, apiKey, DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_BURST, DEFAULT_CONCURRENCY, DEFAULT_MAX_ATTEMPTS,
+            DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * @param requestsPerMinute the sustained request rate
+     * @param burst the number of requests that may be made at once after being idle, 1 for evenly
+     *              paced requests
+     * @param concurrency the maximum number of requests in flight
+     * @param maxAttempts the number of requests made for a symbol before giving up on it
+     * @param initialBackoff the upper bound of the wait before the first retry, doubled for every
+     *                       following retry
+     * @param maxBackoff the upper bound of the wait before any retry
+     */
+    FetchScheduler(AlphaVantageClient client, String apiKey, double requestsPerMinute, int burst, int concurrency,
+                   int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        if (requestsPerMinute <= 0 || burst < 1 || concurrency < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("The request rate, burst, concurrency and attempts must be positive");
+        }
+        this.client = Objects.requireNonNull(client);
+        this.apiKey = Objects.requireNonNull(apiKey);
+        this.tokens = new TokenBucket(burst, requestsPerMinute / TimeUnit.MINUTES.toNanos(1));
+        this.concurrency = concurrency;
+        this.fetchers = Executors.newFixedThreadPool(concurrency, daemonThreadFactory());
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        final AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, "alpha-vantage-fetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Starts fetching the symbols in order, keeping a number of symbols fetched or being fetched
+     * ahead of the ones taken
+     *
+     * @param symbols the symbols in the order they will be taken
+     * @param needed whether a symbol needs fetching, tested on the fetch threads before fetching
+     * @return the fetches, each completed with the fetched points, or no points if not needed or
+     *         if every attempt failed, or with a {@link CancellationException} if interrupted
+     */
+    Prefetch prefetch(List<Symbol> symbols, AlphaVantageClient.FetchSize fetchSize, Predicate<Symbol> needed) {
+        return new Prefetch(symbols, fetchSize, needed, 2 * concurrency);
+    }
+
+    private List<DataPoint> fetchWithRetries(Symbol symbol, AlphaVantageClient.FetchSize fetchSize) {
+        RuntimeException lastException = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            try {
+                if (attempt > 0) {
+                    backOff(attempt);
+                }
+                tokens.acquire();
+                // Parse the response on the fetch thread, overlapping with the persisting threads
+                return client.getDataPoints(apiKey, symbol, fetchSize).collect(toList());
+            } catch (InterruptedException e) {
+                // Not to be mistaken for a symbol without points, which would be persisted as such
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while fetching data for " + symbol.getName());
+            } catch (RuntimeException e) {
+                lastException = e;
+                System.out.println("Failed to fetch data for " + symbol.getName() + " (" + e.getMessage() + "), will retry after backing off");
+            }
+        }
+        System.out.println();
+        System.out.println("Failed to get stock data for " + symbol.getName() + " after " + maxAttempts + " attempts");
+        lastException.printStackTrace();
+        System.out.println();
+        return Collections.emptyList();
+    }
+
+    private void backOff(int attempt) throws InterruptedException {
+        final long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Stops the fetch threads, abandoning any queued fetches
+     */
+    @Override
+    public void close() {
+        fetchers.shutdownNow();
+    }
+
+    /**
+     * The fetches of an ordered list of symbols, made ahead of the symbols being taken. Symbols may
+     * be taken slightly out of order by parallel takers, a symbol not fetched yet when taken is
+     * fetched right away.
+     */
+    class Prefetch implements AutoCloseable {
+        private final List<Symbol> symbols;
+        private final AlphaVantageClient.FetchSize fetchSize;
+        private final Predicate<Symbol> needed;
+        private final CompletableFuture<List<DataPoint>>[] fetches;
+        private final int depth;
+        private int taken;
+        private int submitted;
+
+        @SuppressWarnings("unchecked")
+        private Prefetch(List<Symbol> symbols, AlphaVantageClient.FetchSize fetchSize, Predicate<Symbol> needed, int depth) {
+            this.symbols = symbols;
+            this.fetchSize = fetchSize;
+            this.needed = needed;
+            this.fetches = new CompletableFuture[symbols.size()];
+            this.depth = depth;
+            submitAhead();
+        }
+
+        /**
+         * @param index the index of the symbol in the prefetched list
+         * @return the fetched points of the symbol, waiting for them if necessary
+         * @throws CancellationException if the fetch was interrupted or this prefetch has been closed
+         */
+        List<DataPoint> take(int index) {
+            final CompletableFuture<List<DataPoint>> fetch;
+            synchronized (this) {
+                if (fetches[index] == null) {
+                    fetches[index] = submit(index);
+                }
+                fetch = fetches[index];
+                fetches[index] = TAKEN;
+                taken++;
+                submitAhead();
+            }
+            try {
+                return fetch.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof CancellationException) {
+                    throw (CancellationException) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        private void submitAhead() {
+            while (submitted < fetches.length && submitted < taken + depth) {
+                if (fetches[submitted] == null) {
+                    fetches[submitted] = submit(submitted);
+                }
+                submitted++;
+            }
+        }
+
+        private CompletableFuture<List<DataPoint>> submit(int index) {
+            final Symbol symbol = symbols.get(index);
+            return CompletableFuture.supplyAsync(
+                () -> needed.test(symbol) ? fetchWithRetries(symbol, fetchSize) : Collections.<DataPoint>emptyList(),
+                fetchers);
+        }
+
+        /**
+         * Cancels the fetches not taken
+         */
+        @Override
+        public synchronized void close() {
+            for (CompletableFuture<List<DataPoint>> fetch : fetches) {
+                if (fetch != null) {
+                    fetch.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands out tokens at a fixed rate, holding up to a given number of unused tokens. A token not
+     * available yet is reserved, and the taker sleeps until its time, so takers are served in the
+     * order they arrive.
+     */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double available;
+        private long refilledAt;
+
+        TokenBucket(double capacity, double tokensPerNano) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.available = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+
+        void acquire() throws InterruptedException {
+            final long waitNanos;
+            synchronized (this) {
+                final long now = System.nanoTime();
+                available = Math.min(capacity, available + (now - refilledAt) * tokensPerNano);
+                refilledAt = now;
+                available -= 1;
+                waitNanos = available >= 0 ? 0 : (long) Math.ceil(-available / tokensPerNano);
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+import java.util.Arrays;
+
+/**
+ * A batch of data points stored column by column in primitive arrays. Batches are recycled by the
+ * {@link PointWriter} once written, so their arrays are allocated once and reused for all points.
+ */
+class PointBatch implements PointSink {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    int[] symbolIds = new int[INITIAL_CAPACITY];
+    long[] timeStamps = new long[INITIAL_CAPACITY];
+    long[] opens = new long[INITIAL_CAPACITY];
+    long[] closes = new long[INITIAL_CAPACITY];
+    long[] highs = new long[INITIAL_CAPACITY];
+    long[] lows = new long[INITIAL_CAPACITY];
+    long[] volumes = new long[INITIAL_CAPACITY];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    @Override
+    public void accept(int symbolId, long timeStamp, long open, long close, long high, long low, long volume) {
+        if (size == timeStamps.length) {
+            grow();
+        }
+        symbolIds[size] = symbolId;
+        timeStamps[size] = timeStamp;
+        opens[size] = open;
+        closes[size] = close;
+        highs[size] = high;
+        lows[size] = low;
+        volumes[size] = volume;
+        size++;
+    }
+
+    private void grow() {
+        final int capacity = size * 2;
+        symbolIds = Arrays.copyOf(symbolIds, capacity);
+        timeStamps = Arrays.copyOf(timeStamps, capacity);
+        opens = Arrays.copyOf(opens, capacity);
+        closes = Arrays.copyOf(closes, capacity);
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+    }
+}
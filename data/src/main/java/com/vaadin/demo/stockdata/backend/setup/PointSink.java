@@ -0,0 +1,9 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+/**
+ * Receives data points as primitive values, without creating a data point object for each
+ */
+@FunctionalInterface
+interface PointSink {
+    void accept(int symbolId, long timeStamp, long open, long close, long high, long low, long volume);
+}
@@ -0,0 +1,262 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A fixed pool of writer threads writing batches of data points for all symbols, each batch in
+ * its own transaction over a pooled connection. The number of batches queued or being written is
+ * bounded, so producers block when they are faster than the database instead of piling up points
+ * in memory.
+ *
+ * Points travel in column oriented {@link PointBatch}es handed out by {@link #takeBatch()} and
+ * recycled once written, so a steady stream of points is written without allocating per point or
+ * per batch.
+ *
+ * Batches are either inserted with prepared statements or bulk loaded with LOAD DATA LOCAL INFILE,
+ * which skips the per row statement protocol and is many times faster for large batches. Bulk
+ * loaded rows are encoded in memory and streamed to the server without any temporary file.
+ */
+class PointWriter implements AutoCloseable {
+    public static final int DEFAULT_WRITERS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final int DEFAULT_BULK_BATCH_SIZE = 200_000;
+    public static final String INSERT_SQL = "INSERT INTO data_point (symbol_id, time_stamp, open, close, high, low, volume) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    // The file name is only a placeholder, the driver reads the stream set on the statement instead
+    public static final String LOAD_SQL = "LOAD DATA LOCAL INFILE 'data_point.tsv' INTO TABLE data_point (symbol_id, time_stamp, open, close, high, low, volume)";
+    // The primary key is still enforced, duplicates are skipped with a warning by LOAD DATA LOCAL
+    public static final String DEFER_CHECKS_SQL = "SET unique_checks = 0, foreign_key_checks = 0";
+    public static final String RESTORE_CHECKS_SQL = "SET unique_checks = 1, foreign_key_checks = 1";
+    public static final String ANALYZE_SQL = "ANALYZE TABLE data_point";
+
+    /**
+     * How batches are written to the database
+     */
+    enum Mode {
+        /**
+         * Batches of prepared INSERT statements
+         */
+        INSERT,
+
+        /**
+         * LOAD DATA LOCAL INFILE of rows streamed from memory, needing local_infile to be enabled
+         * on the server and allowLoadLocalInfile on the connection
+         */
+        BULK_LOAD
+    }
+
+    private final ConnectionPool connections;
+    private final ExecutorService writers;
+    private final BlockingQueue<PointBatch> freeBatches = new LinkedBlockingQueue<>();
+    private final AtomicInteger allocatedBatches = new AtomicInteger();
+    private final int maxBatches;
+    private final int batchSize;
+    private final int bulkBatchSize;
+    private final Consumer<Long> progressConsumer;
+    private final ThreadLocal<DelimitedRows> rows = ThreadLocal.withInitial(DelimitedRows::new);
+
+    /**
+     * @param connections the connections to write over, at least as many as writers
+     * @param writers the number of writer threads
+     * @param batchSize the number of data points written in each transaction when inserting
+     * @param bulkBatchSize the number of data points written in each transaction when bulk loading
+     * @param progress notified with the number of points of each written batch
+     */
+    PointWriter(ConnectionPool connections, int writers, int batchSize, int bulkBatchSize, Consumer<Long> progress) {
+        if (writers < 1 || batchSize < 1 || bulkBatchSize < 1) {
+            throw new IllegalArgumentException("There must be at least one writer and one point per batch");
+        }
+        this.connections = Objects.requireNonNull(connections);
+        this.progressConsumer = Objects.requireNonNull(progress);
+        this.batchSize = batchSize;
+        this.bulkBatchSize = bulkBatchSize;
+        this.writers = Executors.newFixedThreadPool(writers, daemonThreadFactory());
+        // Every writer busy with one batch, one more batch waiting for each and one being filled,
+        // and one more for each thread that may fill a batch, the common pool threads and the
+        // calling thread, so that the threads filling batches never all wait for one
+        this.maxBatches = writers * 3 + ForkJoinPool.getCommonPoolParallelism() + 1;
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        final AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            final Thread thread = new Thread(task, "point-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    int getBatchSize(Mode mode) {
+        return mode == Mode.BULK_LOAD ? bulkBatchSize : batchSize;
+    }
+
+    /**
+     * @return true if the server accepts LOAD DATA LOCAL INFILE
+     */
+    boolean isBulkLoadSupported() {
+        final Connection connection = connections.borrow();
+        boolean broken = false;
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT @@GLOBAL.local_infile")) {
+            return result.next() && result.getBoolean(1);
+        } catch (SQLException e) {
+            broken = true;
+            e.printStackTrace();
+            return false;
+        } finally {
+            connections.release(connection, broken);
+        }
+    }
+
+    /**
+     * Refreshes the index statistics of the data point table after bulk loading, which were
+     * deferred while loading
+     */
+    void analyze() {
+        final Connection connection = connections.borrow();
+        boolean broken = false;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(ANALYZE_SQL);
+        } catch (SQLException e) {
+            broken = true;
+            e.printStackTrace();
+        } finally {
+            connections.release(connection, broken);
+        }
+    }
+
+    /**
+     * Hands out an empty batch to fill, blocking while the maximum number of batches is being
+     * filled or in transit. The batch is returned by passing it to {@link #write(PointBatch, Mode)}.
+     */
+    PointBatch takeBatch() {
+        final PointBatch free = freeBatches.poll();
+        if (free != null) {
+            return free;
+        }
+        if (allocatedBatches.getAndIncrement() < maxBatches) {
+            return new PointBatch();
+        }
+        allocatedBatches.decrementAndGet();
+        try {
+            return freeBatches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a batch", e);
+        }
+    }
+
+    /**
+     * Queues a batch for writing. The batch is recycled once written.
+     *
+     * @param batch a batch from {@link #takeBatch()}, not to be used by the caller afterwards
+     * @param mode how to write the batch
+     * @return a future completed when the batch has been written, or has failed and been reported
+     */
+    CompletableFuture<Void> write(PointBatch batch, Mode mode) {
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+        if (batch.isEmpty()) {
+            recycle(batch);
+            written.complete(null);
+            return written;
+        }
+        writers.execute(() -> {
+            try {
+                if (mode == Mode.BULK_LOAD) {
+                    bulkLoad(batch);
+                } else {
+                    persistInTransaction(batch);
+                }
+            } finally {
+                recycle(batch);
+                written.complete(null);
+            }
+        });
+        return written;
+    }
+
+    private void recycle(PointBatch batch) {
+        batch.clear();
+        freeBatches.add(batch);
+    }
+
+    private void persistInTransaction(PointBatch batch) {
+        final Connection connection = connections.borrow();
+        boolean broken = false;
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL)) {
+            connection.setAutoCommit(false);
+            for (int i = 0; i < batch.size(); i++) {
+                statement.setInt(1, batch.symbolIds[i]);
+                statement.setLong(2, batch.timeStamps[i]);
+                statement.setLong(3, batch.opens[i]);
+                statement.setLong(4, batch.closes[i]);
+                statement.setLong(5, batch.highs[i]);
+                statement.setLong(6, batch.lows[i]);
+                statement.setLong(7, batch.volumes[i]);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            connection.commit();
+            progressConsumer.accept((long) batch.size());
+        } catch (SQLException e) {
+            broken = true;
+            e.printStackTrace();
+        } finally {
+            connections.release(connection, broken);
+        }
+    }
+
+    private void bulkLoad(PointBatch batch) {
+        final DelimitedRows encoded = rows.get();
+        encoded.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            encoded.add(batch.symbolIds[i], batch.timeStamps[i], batch.opens[i], batch.closes[i],
+                batch.highs[i], batch.lows[i], batch.volumes[i]);
+        }
+        final Connection connection = connections.borrow();
+        boolean broken = false;
+        try (Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            statement.execute(DEFER_CHECKS_SQL);
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(encoded.toInputStream());
+            statement.execute(LOAD_SQL);
+            connection.commit();
+            statement.execute(RESTORE_CHECKS_SQL);
+            progressConsumer.accept((long) batch.size());
+        } catch (SQLException e) {
+            broken = true;
+            e.printStackTrace();
+        } finally {
+            connections.release(connection, broken);
+        }
+    }
+
+    /**
+     * Writes all queued batches and stops the writer threads
+     */
+    @Override
+    public void close() {
+        writers.shutdown();
+        try {
+            writers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.vaadin.demo.stockdata.backend.setup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Generates daily data points in place of the ones fetched from Alpha Vantage, so that a database
+ * of any size can be created without an API key or a network connection. The update phases then
+ * extrapolate between the generated points just as between fetched ones.
+ *
+ * Each symbol gets its own price level, volatility and volume, and a geometric random walk over
+ * the weekdays of the history, all derived from the seed and the symbol id. The same seed, end
+ * date and history length always give the same points, whatever the fetch size or the symbols
+ * generated before.
+ */
+class SyntheticDataGenerator {
+    public static final int DEFAULT_HISTORY_DAYS = 5 * 365;
+
+    /**
+     * The number of the most recent days generated for a compact fetch, as in Alpha Vantage
+     */
+    private static final int COMPACT_DAYS = 100;
+
+    // Prices are stored in cents and volumes in unsigned 32 bit columns
+    private static final double MIN_PRICE = 5_00;
+    private static final double MAX_PRICE = 500_00;
+    private static final double MIN_VOLUME = 10_000;
+    private static final double MAX_VOLUME = 10_000_000;
+    private static final double MIN_DAILY_VOLATILITY = 0.005;
+    private static final double MAX_DAILY_VOLATILITY = 0.04;
+
+    private final long seed;
+    private final int historyDays;
+    private final LocalDate endDate;
+
+    /**
+     * @param seed the seed the random walk of every symbol is derived from
+     * @param historyDays the number of calendar days up to the end date to generate points for
+     * @param endDate the last day to generate a point for
+     */
+    SyntheticDataGenerator(long seed, int historyDays, LocalDate endDate) {
+        if (historyDays < 1) {
+            throw new IllegalArgumentException("The history must be at least one day");
+        }
+        this.seed = seed;
+        this.historyDays = historyDays;
+        this.endDate = endDate;
+    }
+
+    /**
+     * Generates the daily points of a symbol, one per weekday at the start of the day in UTC, so
+     * that the time stamps do not depend on the time zone of the host
+     *
+     * @param symbolId the symbol to generate points for
+     * @param fetchSize COMPACT for the most recent days only, FULL for the whole history
+     * @param present the time stamps already in the database, which are skipped
+     * @param sink receives the generated points in time stamp order
+     * @return the number of generated points
+     */
+    int generate(int symbolId, AlphaVantageClient.FetchSize fetchSize, Set<Long> present, PointSink sink) {
+        final SplittableRandom random = new SplittableRandom(DataPointExtrapolator.segmentSeed(seed, symbolId, 0));
+        final double volatility = uniform(random, MIN_DAILY_VOLATILITY, MAX_DAILY_VOLATILITY);
+        final double baseVolume = logUniform(random, MIN_VOLUME, MAX_VOLUME);
+        double close = logUniform(random, MIN_PRICE, MAX_PRICE);
+
+        final LocalDate firstDay = endDate.minusDays(historyDays - 1);
+        final LocalDate firstEmitted = fetchSize == AlphaVantageClient.FetchSize.COMPACT
+            ? endDate.minusDays(COMPACT_DAYS - 1)
+            : firstDay;
+        int count = 0;
+        for (LocalDate day = firstDay; !day.isAfter(endDate); day = day.plusDays(1)) {
+            if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            }
+            // The walk is taken for every day, emitted or not, so that it does not depend on the fetch size
+            final double open = close * Math.exp(volatility * 0.3 * gaussian(random));
+            close = Math.min(Math.max(open * Math.exp(volatility * gaussian(random)), MIN_PRICE / 100), MAX_PRICE * 100);
+            final double high = Math.max(open, close) * (1 + volatility * 0.5 * Math.abs(gaussian(random)));
+            final double low = Math.min(open, close) * (1 - Math.min(volatility * 0.5 * Math.abs(gaussian(random)), 0.5));
+            final double volume = baseVolume * Math.exp(0.3 * gaussian(random));
+
+            final long timeStamp = day.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+            if (day.isBefore(firstEmitted) || present.contains(timeStamp)) {
+                continue;
+            }
+            sink.accept(symbolId, timeStamp, Math.round(open), Math.round(close), Math.round(high),
+                Math.max(Math.round(low), 1), Math.min(Math.round(volume), Integer.MAX_VALUE));
+            count++;
+        }
+        return count;
+    }
+
+    private static double uniform(SplittableRandom random, double min, double max) {
+        return min + random.nextDouble() * (max - min);
+    }
+
+    private static double logUniform(SplittableRandom random, double min, double max) {
+        return Math.exp(uniform(random, Math.log(min), Math.log(max)));
+    }
+
+    /**
+     * @return a standard normally distributed value, by the Box-Muller transform
+     */
+    private static double gaussian(SplittableRandom random) {
+        final double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+}
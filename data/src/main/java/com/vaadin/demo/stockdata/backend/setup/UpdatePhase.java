@@ -11,11 +11,11 @@ import static java.util.concurrent.TimeUnit.*;
  * set of data points. This enum encodes the properties of each phase.
  */
 enum UpdatePhase {
-    SMALL_FETCH(COMPACT, null),
-    LARGE_FETCH(FULL, DAYS),
-    COARSE_EXTRAPOLATE(null, HOURS),
-    FINE_EXTRAPOLATE(null, MINUTES),
-    FINAL_EXTRAPOLATE(null, SECONDS);
+    SMALL_FETCH(COMPACT, null, PointWriter.Mode.INSERT),
+    LARGE_FETCH(FULL, DAYS, PointWriter.Mode.INSERT),
+    COARSE_EXTRAPOLATE(null, HOURS, PointWriter.Mode.INSERT),
+    FINE_EXTRAPOLATE(null, MINUTES, PointWriter.Mode.INSERT),
+    FINAL_EXTRAPOLATE(null, SECONDS, PointWriter.Mode.BULK_LOAD);
 
     /**
      * The size of the batch of data fetched from Alpha Vantage
@@ -27,9 +27,15 @@ enum UpdatePhase {
      */
     private final Long extrapolateStep;
 
-    UpdatePhase(AlphaVantageClient.FetchSize fetchSize, TimeUnit granularity) {
+    /**
+     * How the data points are written unless selected otherwise
+     */
+    private final PointWriter.Mode defaultWriteMode;
+
+    UpdatePhase(AlphaVantageClient.FetchSize fetchSize, TimeUnit granularity, PointWriter.Mode defaultWriteMode) {
         this.fetchSize = fetchSize;
         this.extrapolateStep = granularity != null ? SECONDS.convert(1, granularity) : null;
+        this.defaultWriteMode = defaultWriteMode;
     }
 
     public Optional<Long> getExtrapolateStep() {
@@ -39,4 +45,8 @@ enum UpdatePhase {
     public Optional<AlphaVantageClient.FetchSize> getFetchSize() {
         return Optional.ofNullable(fetchSize);
     }
+
+    public PointWriter.Mode getDefaultWriteMode() {
+        return defaultWriteMode;
+    }
 }